@@ -0,0 +1,168 @@
+package TetrisGA;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@code EngineBenchmark} class times the hot paths of the engine with
+ * JMH, on the reference boards of {@link TetrisGA.Benchmark}. Every call
+ * picks the next piece, rotation and column from a counter, so the JIT can't
+ * specialise on a single placement.
+ *
+ * Build and run it with {@code mvn -Pjmh package} and
+ * {@code java -jar target/benchmarks.jar}. Add {@code -prof gc} to see the
+ * allocation rate of every case.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EngineBenchmark {
+
+    private static final TileType[] TYPES = TileType.values();
+
+    /**
+     * The counter the placements are drawn from.
+     */
+    @State(Scope.Thread)
+    public static class Placements {
+
+        int i;
+
+        TileType type;
+
+        int rotation;
+
+        int x;
+
+        /**
+         * Moves on to the next piece, rotation and column.
+         */
+        void next() {
+            i++;
+            type = TYPES[i % TYPES.length];
+            rotation = i & 3;
+            x = type.getMinColumn(rotation) + (i >> 2) % (type.getMaxColumn(rotation) - type.getMinColumn(rotation) + 1);
+        }
+    }
+
+    /**
+     * A reference board, as a board, a grid and an engine.
+     */
+    @State(Scope.Thread)
+    public static class Boards {
+
+        @Param({"empty", "half-full", "ragged", "nearly-dead"})
+        String board;
+
+        Board reference;
+
+        int[][] grid;
+
+        int[] withLines;
+
+        Board scratch;
+
+        Evaluator evaluator;
+
+        GameEngine engine;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            int[] rows = TetrisGA.Benchmark.getReferenceBoard(board);
+            reference = new Board();
+            reference.setRows(rows);
+            grid = new int[Board.ROW_COUNT + Board.HIDDEN_ROW_COUNT][Board.COL_COUNT];
+            reference.copyTo(grid);
+            withLines = TetrisGA.Benchmark.withFullRows(rows);
+            scratch = new Board();
+            evaluator = new Evaluator(TetrisGA.Benchmark.WEIGHTS);
+            engine = new GameEngine(evaluator);
+            engine.getBoard().setRows(rows);
+        }
+    }
+
+    @Benchmark
+    public int insetLookups(Placements p) {
+        p.next();
+        return p.type.getLeftInset(p.rotation) + p.type.getRightInset(p.rotation) + p.type.getTopInset(p.rotation)
+                + p.type.getBottomInset(p.rotation);
+    }
+
+    @Benchmark
+    public boolean isValidAndEmpty(Boards b, Placements p) {
+        p.next();
+        return b.reference.isValidAndEmpty(p.type, p.x, (p.i >> 3) % (Board.ROW_COUNT - 3), p.rotation);
+    }
+
+    @Benchmark
+    public int getLandingRow(Boards b, Placements p) {
+        p.next();
+        return b.reference.getLandingRow(p.type, p.x, p.rotation);
+    }
+
+    @Benchmark
+    public int checkLines(Boards b) {
+        b.scratch.setRows(b.withLines);
+        return b.scratch.checkLines();
+    }
+
+    @Benchmark
+    public double calculatePoints(Boards b) {
+        return b.evaluator.calculatePoints(b.grid);
+    }
+
+    @Benchmark
+    public double calculatePointsDelta(Boards b, Placements p) {
+        p.next();
+        return b.evaluator.calculatePoints(b.reference, p.type, p.x, b.reference.getLandingRow(p.type, p.x, p.rotation), p.rotation);
+    }
+
+    @Benchmark
+    public int calculateHeight(Boards b) {
+        return Evaluator.calculateHeight(b.grid);
+    }
+
+    @Benchmark
+    public int calculateLines(Boards b) {
+        return Evaluator.calculateLines(b.grid);
+    }
+
+    @Benchmark
+    public int calculateHoles(Boards b) {
+        return Evaluator.calculateHoles(b.grid);
+    }
+
+    @Benchmark
+    public int calculateBumpines(Boards b) {
+        return Evaluator.calculateBumpines(b.grid);
+    }
+
+    @Benchmark
+    public int calculateBlockades(Boards b) {
+        return Evaluator.calculateBlockades(b.grid);
+    }
+
+    @Benchmark
+    public int bruteForce(Boards b, Placements p) {
+        p.next();
+        b.engine.setPieceType(p.type);
+        b.engine.bruteForce();
+        return b.engine.getPieceCol() + b.engine.getPieceRotation();
+    }
+
+}
@@ -0,0 +1,355 @@
+package TetrisGA;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * The {@code Benchmark} class runs the checks that need a whole engine or a
+ * whole run: placements per second, which must not allocate, how many games
+ * racing saves, which must be at least {@code MIN_RACE_CUT} times without
+ * losing the elite, and how many generations a warm start saves. It exits with status 1 if a check fails. The hot paths
+ * themselves are timed by the JMH benchmarks in {@code jmh/TetrisGA}, on the
+ * reference boards defined here.
+ *
+ * Run it with {@code java TetrisGA.Benchmark [seconds of warm-up] [--allocations]}.
+ * With {@code --allocations} only the allocation check runs, which the build
+ * does in the {@code test} phase, so an allocating piece loop fails
+ * {@code mvn package}.
+ *
+ */
+public class Benchmark {
+
+    /**
+     * The names of the reference boards.
+     */
+    static final String[] BOARD_NAMES = {"empty", "half-full", "ragged", "nearly-dead"};
+
+    /**
+     * The weights the reference boards are scored with.
+     */
+    static final double[] WEIGHTS = {-2.841884818353364, 90.33398858013996, -86.29884523976246, -17.97583422646018, -3.496915438232847};
+
+    /**
+     * The number of nanoseconds to warm the engine up for.
+     */
+    private static long runNanos = 1000000000L;
+
+    /**
+     * The most bytes 10,000 placements may allocate once the engine has
+     * warmed up. Reading the allocation counter costs a few dozen bytes,
+     * while a single object per placement would already cost over 100 KB.
+     */
+    private static final long ALLOCATION_LIMIT = 1024;
+
+    /**
+     * The fewest times fewer games a race must play than a full evaluation,
+     * on every seed. With 8 games and {@code FIRST_ROUND_GAMES} of them
+     * before anyone drops out, even a race that keeps only the elite of 5
+     * out of 100 can't do better than 800 / (100 * 3 + 5 * 5) = 2.46x, so
+     * the 3x first aimed for is out of reach. Random populations with a piece
+     * budget keep most chromosomes close to the elite after three games, and
+     * the race that never loses one of it cuts about 1.5x to 1.6x.
+     */
+    private static final double MIN_RACE_CUT = 1.4;
+
+    public static void main(String[] args) {
+        boolean allocationsOnly = false;
+        for(String arg : args) {
+            if(arg.equals("--allocations")) {
+                allocationsOnly = true;
+            } else {
+                runNanos = (long)(Double.parseDouble(arg) * 1e9);
+            }
+        }
+
+        System.out.println(String.format("%-42s %12s", "case", "result"));
+        boolean allocationFree = measureGames(new Evaluator(WEIGHTS));
+        if(allocationsOnly) {
+            if(!allocationFree) {
+                System.exit(1);
+            }
+            return;
+        }
+        boolean raceKept = measureRacing();
+        measureWarmStart();
+        if(!allocationFree || !raceKept) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Gets a reference board.
+     * @param name One of {@code BOARD_NAMES}.
+     * @return The rows of the board.
+     */
+    static int[] getReferenceBoard(String name) {
+        if(name.equals("empty")) {
+            return emptyBoard();
+        } else if(name.equals("half-full")) {
+            return halfFullBoard();
+        } else if(name.equals("ragged")) {
+            return raggedBoard();
+        } else if(name.equals("nearly-dead")) {
+            return nearlyDeadBoard();
+        }
+        throw new IllegalArgumentException("Unknown reference board " + name);
+    }
+
+    /**
+     * Runs the genetic algorithm from uniform random weights, then warm
+     * started from {@code manualChromosome} and from the checkpoint of the
+     * first run, and reports how many generations each took to reach a
+     * target fitness.
+     */
+    private static void measureWarmStart() {
+        long[] seeds = {1, 2, 3};
+        String target = "8000";
+        int generations = 20;
+
+        for(long seed : seeds) {
+            File checkpoint;
+            try {
+                checkpoint = File.createTempFile("warm-start", ".bin");
+            } catch(IOException e) {
+                throw new IllegalStateException("Can't create a checkpoint file", e);
+            }
+            String[][] runs = {
+                {"uniform", "--checkpoint=" + checkpoint.getPath()},
+                {"manual", "--warmStart=manual"},
+                {"checkpoint", "--warmStart=" + checkpoint.getPath()},
+            };
+            for(String[] run : runs) {
+                Config config = new Config();
+                config.set("populationSize", "40");
+                config.set("numberOfGenerations", String.valueOf(generations));
+                config.set("pieceBudget", "500");
+                config.set("maxScore", "100000");
+                config.set("commonRandomNumbers", "true");
+                config.set("racing", "true");
+                config.set("cacheSize", "10000");
+                config.set("targetFitness", target);
+                config.set("seed", String.valueOf(seed));
+                config.set(run[1].substring(2, run[1].indexOf('=')), run[1].substring(run[1].indexOf('=') + 1));
+                long reached = runQuietly(new geneticOperations(config));
+                System.out.println(String.format("%-42s %12s", "generations to " + target + ", " + run[0] + " [seed " + seed + "]",
+                        reached < 0 ? ">" + generations : String.valueOf(reached)));
+            }
+            checkpoint.delete();
+        }
+    }
+
+    /**
+     * Runs the genetic algorithm without letting it print.
+     * @param run The run.
+     * @return The generation it reached its target fitness in, or -1.
+     */
+    private static long runQuietly(geneticOperations run) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        try {
+            run.run();
+        } finally {
+            System.setOut(out);
+        }
+        return run.getTargetGeneration();
+    }
+
+    /**
+     * Evaluates random populations on a fixed set of seeds with and without
+     * racing, and reports how many fewer games the race played and how many
+     * of the elite it kept. Racing must keep the whole elite, and play at
+     * least {@code MIN_RACE_CUT} times fewer games.
+     * @return Whether every race kept the whole elite and cut enough games.
+     */
+    private static boolean measureRacing() {
+        long[] seeds = {1, 2, 3, 4, 5, 6};
+        boolean passed = true;
+        int populationSize = 100;
+        int numberOfGames = 8;
+        int elite = populationSize / 20;
+
+        for(long seed : seeds) {
+            Population full = randomPopulation(populationSize, seed);
+            Population raced = randomPopulation(populationSize, seed);
+
+            ParallelEvaluator evaluator = new ParallelEvaluator(Runtime.getRuntime().availableProcessors(), Randomizer.UNIFORM, seed);
+            evaluator.setCommonRandomNumbers(true);
+            evaluator.setPieceBudget(1000);
+            evaluator.evaluate(full, numberOfGames);
+            evaluator.shutdown();
+
+            evaluator = new ParallelEvaluator(Runtime.getRuntime().availableProcessors(), Randomizer.UNIFORM, seed);
+            evaluator.setCommonRandomNumbers(true);
+            evaluator.setPieceBudget(1000);
+            evaluator.evaluate(raced, numberOfGames, elite);
+            evaluator.shutdown();
+
+            Set<Integer> expected = getElite(full, elite);
+            expected.retainAll(getElite(raced, elite));
+            System.out.println(String.format("%-42s %12s", "race cut [seed " + seed + "]",
+                    String.format("%.2fx", evaluator.getRaceCut())));
+            System.out.println(String.format("%-42s %12s", "race elite kept [seed " + seed + "]",
+                    expected.size() + "/" + elite));
+            if(expected.size() < elite) {
+                System.out.println("FAILED: racing dropped a chromosome of the elite");
+                passed = false;
+            }
+            if(evaluator.getRaceCut() < MIN_RACE_CUT) {
+                System.out.println(String.format("FAILED: racing played only %.2fx fewer games, expected at least %.2fx",
+                        evaluator.getRaceCut(), MIN_RACE_CUT));
+                passed = false;
+            }
+        }
+        return passed;
+    }
+
+    private static Population randomPopulation(int size, long seed) {
+        Random random = new Random(seed);
+        Population population = new Population(size);
+        for(int i = 0; i < size; i++) {
+            for(int gene = 0; gene < Population.GENE_COUNT; gene++) {
+                population.setGene(i, gene, -100 + 200 * random.nextDouble());
+            }
+        }
+        return population;
+    }
+
+    private static Set<Integer> getElite(Population population, int size) {
+        Set<Integer> elite = new HashSet<Integer>();
+        for(int index : Selection.getTop(population, size)) {
+            elite.add(index);
+        }
+        return elite;
+    }
+
+    /**
+     * Plays full games, and reports placements per second and the bytes
+     * allocated per 10,000 placements once the engine has warmed up. The
+     * move search and the piece loop must not allocate, so more than
+     * {@code ALLOCATION_LIMIT} bytes fail the benchmark.
+     * @param evaluator The evaluator to play with.
+     * @return Whether the placements stayed under the limit, or the JVM can't tell.
+     */
+    private static boolean measureGames(Evaluator evaluator) {
+        GameEngine engine = new GameEngine(evaluator);
+        engine.reset();
+        long end = System.nanoTime() + runNanos;
+        while(System.nanoTime() < end) {
+            if(!engine.step()) {
+                engine.reset();
+            }
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long before = getAllocatedBytes(threads);
+        long start = System.nanoTime();
+        for(int i = 0; i < 10000; i++) {
+            if(!engine.step()) {
+                engine.reset();
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        long after = getAllocatedBytes(threads);
+
+        System.out.println(String.format("%-42s %12.1f", "placements/sec", 10000 * 1e9 / nanos));
+        if(before < 0 || after < 0) {
+            System.out.println(String.format("%-42s %12s", "bytes allocated per 10,000 placements", "unknown"));
+            return true;
+        }
+        System.out.println(String.format("%-42s %12d", "bytes allocated per 10,000 placements", after - before));
+        if(after - before > ALLOCATION_LIMIT) {
+            System.out.println("FAILED: the piece loop allocates, more than " + ALLOCATION_LIMIT + " bytes per 10,000 placements");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the bytes allocated by the current thread, if the JVM can tell.
+     * @param threads The thread bean.
+     * @return The allocated bytes, or -1 if they can't be measured.
+     */
+    private static long getAllocatedBytes(ThreadMXBean threads) {
+        if(threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static int[] emptyBoard() {
+        return new int[Board.ROW_COUNT];
+    }
+
+    /**
+     * The bottom half of the board filled, with one hole in every row.
+     */
+    private static int[] halfFullBoard() {
+        int[] rows = new int[Board.ROW_COUNT];
+        for(int y = Board.ROW_COUNT / 2; y < Board.ROW_COUNT; y++) {
+            rows[y] = Board.FULL_ROW & ~(1 << ((y * 3) % Board.COL_COUNT));
+        }
+        return rows;
+    }
+
+    /**
+     * Columns of very different heights with a few holes under them.
+     */
+    private static int[] raggedBoard() {
+        return fromHeights(new int[] {2, 7, 4, 10, 1, 8, 3, 12, 5, 0}, 4);
+    }
+
+    /**
+     * A stack just below the spawn area, riddled with holes.
+     */
+    private static int[] nearlyDeadBoard() {
+        return fromHeights(new int[] {16, 17, 15, 17, 16, 14, 17, 16, 15, 13}, 3);
+    }
+
+    /**
+     * Builds a board from column heights, leaving every {@code holeEvery}th
+     * tile of each column empty.
+     * @param heights The height of every column.
+     * @param holeEvery How often to leave a hole.
+     * @return The rows of the board.
+     */
+    private static int[] fromHeights(int[] heights, int holeEvery) {
+        int[] rows = new int[Board.ROW_COUNT];
+        for(int x = 0; x < Board.COL_COUNT; x++) {
+            for(int h = 0; h < heights[x]; h++) {
+                boolean isHole = h + 1 < heights[x] && (h + x) % holeEvery == holeEvery - 1;
+                if(!isHole) {
+                    rows[Board.ROW_COUNT - 1 - h] |= 1 << x;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Fills the bottom two rows of a board, so clearing lines has work to do.
+     * @param board The rows of the board.
+     * @return A copy of the rows with full rows at the bottom.
+     */
+    static int[] withFullRows(int[] board) {
+        int[] rows = board.clone();
+        rows[Board.ROW_COUNT - 1] = Board.FULL_ROW;
+        rows[Board.ROW_COUNT - 2] = Board.FULL_ROW;
+        return rows;
+    }
+
+}
@@ -0,0 +1,478 @@
+package TetrisGA;
+
+/**
+ * The {@code Board} class is responsible for the state of the game grid. It
+ * does not depend on any AWT or Swing classes, so it can be used by games that
+ * run without a display.
+ *
+ * Each row is stored as a bit mask with bit {@code x} set when column {@code x}
+ * is filled, so collisions, full rows and line clears only take a few integer
+ * operations per row. Which {@link TileType} filled a tile is only needed to
+ * draw it, so that layer is kept only by boards created with colours.
+ *
+ * The board also keeps a few statistics for every column (height, holes and
+ * the tiles covering the deepest hole), so a candidate placement can be
+ * scored from the columns it touches without measuring the whole grid.
+ *
+ */
+public class Board {
+
+    /**
+     * The number of columns on the board.
+     */
+    public static final int COL_COUNT = 10;
+
+    /**
+     * The number of visible rows on the board.
+     */
+    public static final int VISIBLE_ROW_COUNT = 20;
+
+    /**
+     * The number of rows that are hidden from view.
+     */
+    public static final int HIDDEN_ROW_COUNT = 2;
+
+    /**
+     * The total number of rows that the board contains.
+     */
+    public static final int ROW_COUNT = VISIBLE_ROW_COUNT + HIDDEN_ROW_COUNT;
+
+    /**
+     * The lowest row that has to stay empty for a new piece to be spawned. If
+     * anything is left in this row (or above it), the game is over.
+     */
+    public static final int TOP_OUT_ROW = 4;
+
+    /**
+     * The mask of a row where every column is filled.
+     */
+    public static final int FULL_ROW = (1 << COL_COUNT) - 1;
+
+    /**
+     * The rows that make up the board, one bit per column.
+     */
+    private int[] rows;
+
+    /**
+     * The type of piece each tile came from, or {@code null} if the board
+     * doesn't keep colours.
+     */
+    private TileType[][] tiles;
+
+    /**
+     * The height of every column, counted from the floor to its top tile.
+     */
+    private int[] heights;
+
+    /**
+     * The number of empty tiles below the top tile of every column.
+     */
+    private int[] holes;
+
+    /**
+     * The deepest empty tile of every column that has a filled tile right
+     * above it and lies below {@code TOP_OUT_ROW}, or -1 if there's none.
+     */
+    private int[] deepestHoles;
+
+    /**
+     * The number of filled tiles above the deepest hole of every column.
+     */
+    private int[] covered;
+
+    /**
+     * The sum of the heights of every filled tile, counting the bottom row as 1.
+     */
+    private int[] tileHeights;
+
+    /**
+     * The totals of the column statistics over the whole board.
+     */
+    private int totalHoles;
+    private int totalCovered;
+    private int totalTileHeight;
+    private int bumpiness;
+
+    /**
+     * Creates a new, empty board without colours.
+     */
+    public Board() {
+        this(false);
+    }
+
+    /**
+     * Creates a new, empty board.
+     * @param hasColors Whether or not to remember which piece filled each tile.
+     */
+    public Board(boolean hasColors) {
+        rows = new int[ROW_COUNT];
+        heights = new int[COL_COUNT];
+        holes = new int[COL_COUNT];
+        deepestHoles = new int[COL_COUNT];
+        covered = new int[COL_COUNT];
+        tileHeights = new int[COL_COUNT];
+        updateColumns(0, COL_COUNT - 1);
+        if(hasColors) {
+            tiles = new TileType[ROW_COUNT][COL_COUNT];
+        }
+    }
+
+    /**
+     * Resets the board and clears away any tiles.
+     */
+    public void clear() {
+        for(int i = 0; i < ROW_COUNT; i++) {
+            rows[i] = 0;
+        }
+        updateColumns(0, COL_COUNT - 1);
+        if(tiles != null) {
+            for(int i = 0; i < ROW_COUNT; i++) {
+                for(int j = 0; j < COL_COUNT; j++) {
+                    tiles[i][j] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces every row of the board. Boards that keep colours have their
+     * colour layer cleared, since the masks don't say which piece filled a tile.
+     * @param masks The rows, top first, one bit per column.
+     */
+    public void setRows(int[] masks) {
+        clear();
+        System.arraycopy(masks, 0, rows, 0, ROW_COUNT);
+        updateColumns(0, COL_COUNT - 1);
+    }
+
+    /**
+     * Determines whether or not a piece can be placed at the coordinates.
+     * @param type THe type of piece to use.
+     * @param x The x coordinate of the piece.
+     * @param y The y coordinate of the piece.
+     * @param rotation The rotation of the piece.
+     * @return Whether or not the position is valid.
+     */
+    public boolean isValidAndEmpty(TileType type, int x, int y, int rotation) {
+
+        //Ensure the piece is in a valid column.
+        if(x < -type.getLeftInset(rotation) || x + type.getDimension() - type.getRightInset(rotation) >= COL_COUNT) {
+            return false;
+        }
+
+        //Ensure the piece is in a valid row.
+        if(y < -type.getTopInset(rotation) || y + type.getDimension() - type.getBottomInset(rotation) >= ROW_COUNT) {
+            return false;
+        }
+
+		/*
+		 * AND every row of the piece against the board row it would cover.
+		 *
+		 * Note: Shifting can't lose any tiles because we've already checked to
+		 * make sure the piece is in a valid location.
+		 */
+        int bottom = type.getDimension() - type.getBottomInset(rotation);
+        for(int row = type.getTopInset(rotation); row <= bottom; row++) {
+            if((rows[y + row] & shift(type.getRowMask(rotation, row), x)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the row a piece lands on when it's dropped from above the board.
+     * This only looks at the height of the columns the piece covers and the
+     * lowest tile of the piece in each of them.
+     * @param type The type of piece to drop.
+     * @param x The x coordinate of the piece.
+     * @param rotation The rotation of the piece.
+     * @return The row the piece lands on.
+     */
+    public int getLandingRow(TileType type, int x, int rotation) {
+        int landing = ROW_COUNT;
+        int last = type.getDimension() - type.getRightInset(rotation);
+        for(int col = type.getLeftInset(rotation); col <= last; col++) {
+            int row = ROW_COUNT - heights[x + col] - 1 - type.getBottomProfile(rotation, col);
+            if(row < landing) {
+                landing = row;
+            }
+        }
+        return landing;
+    }
+
+    /**
+     * Gets the lowest row a piece can be dropped to, starting from {@code y}.
+     * @param type The type of piece to drop.
+     * @param x The x coordinate of the piece.
+     * @param y The row to start dropping from.
+     * @param rotation The rotation of the piece.
+     * @return The row the piece lands on.
+     */
+    public int getDropRow(TileType type, int x, int y, int rotation) {
+		/*
+		 * If the piece is above the top of every column it covers, it lands
+		 * on the skyline. Otherwise it has been slid under an overhang and
+		 * we have to move it down one row at a time.
+		 */
+        int landing = getLandingRow(type, x, rotation);
+        if(y <= landing) {
+            return landing;
+        }
+        while(isValidAndEmpty(type, x, y + 1, rotation)) {
+            y++;
+        }
+        return y;
+    }
+
+    /**
+     * Adds a piece to the game board. Note: Doesn't check for existing pieces,
+     * and will overwrite them if they exist.
+     * @param type The type of piece to place.
+     * @param x The x coordinate of the piece.
+     * @param y The y coordinate of the piece.
+     * @param rotation The rotation of the piece.
+     */
+    public void addPiece(TileType type, int x, int y, int rotation) {
+		/*
+		 * OR every row of the piece into the board, and record its type in the
+		 * colour layer if we have one.
+		 */
+        for(int row = 0; row < type.getDimension(); row++) {
+            int mask = type.getRowMask(rotation, row);
+            if(mask == 0) {
+                continue;
+            }
+            rows[y + row] |= shift(mask, x);
+            if(tiles != null) {
+                for(int col = 0; col < type.getDimension(); col++) {
+                    if(type.isTile(col, row, rotation)) {
+                        tiles[y + row][x + col] = type;
+                    }
+                }
+            }
+        }
+
+        //Only the columns the piece covers have changed.
+        updateColumns(x + type.getLeftInset(rotation), x + type.getDimension() - type.getRightInset(rotation));
+    }
+
+    /**
+     * Checks the board to see if any lines have been cleared, and
+     * removes them from the game.
+     * @return The number of lines that were cleared.
+     */
+    public int checkLines() {
+        int completedLines = 0;
+
+		/*
+		 * Walk up the board once, copying every row that isn't full down to
+		 * the next free slot from the bottom. Full rows are simply skipped,
+		 * and the rows left over at the top are emptied.
+		 */
+        int target = ROW_COUNT - 1;
+        for(int row = ROW_COUNT - 1; row >= 0; row--) {
+            if(rows[row] == FULL_ROW) {
+                completedLines++;
+                continue;
+            }
+            if(target != row) {
+                rows[target] = rows[row];
+                if(tiles != null) {
+                    System.arraycopy(tiles[row], 0, tiles[target], 0, COL_COUNT);
+                }
+            }
+            target--;
+        }
+        for(int row = target; row >= 0; row--) {
+            rows[row] = 0;
+            if(tiles != null) {
+                for(int col = 0; col < COL_COUNT; col++) {
+                    tiles[row][col] = null;
+                }
+            }
+        }
+
+        //Every row above a cleared line has moved, so every column has changed.
+        if(completedLines > 0) {
+            updateColumns(0, COL_COUNT - 1);
+        }
+        return completedLines;
+    }
+
+    /**
+     * Checks whether anything has been stacked up into the spawn area.
+     * @return Whether or not the board has topped out.
+     */
+    public boolean isToppedOut() {
+        for(int row = 0; row <= TOP_OUT_ROW; row++) {
+            if(rows[row] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies the board into an occupancy grid, writing 1 for every filled
+     * tile and 0 for every empty one.
+     * @param tab The grid to fill. Must have at least {@code ROW_COUNT} rows.
+     */
+    public void copyTo(int[][] tab) {
+        for(int y = 0; y < ROW_COUNT; y++) {
+            int row = rows[y];
+            for(int x = 0; x < COL_COUNT; x++) {
+                tab[y][x] = (row >> x) & 1;
+            }
+        }
+    }
+
+    /**
+     * Checks to see if the tile is already occupied.
+     * @param x The x coordinate to check.
+     * @param y The y coordinate to check.
+     * @return Whether or not the tile is occupied.
+     */
+    public boolean isOccupied(int x, int y) {
+        return ((rows[y] >> x) & 1) != 0;
+    }
+
+    /**
+     * Gets a row of the board as a bit mask, with bit {@code x} set when
+     * column {@code x} is filled.
+     * @param y The row.
+     * @return The row mask.
+     */
+    public int getRow(int y) {
+        return rows[y];
+    }
+
+    /**
+     * Gets a tile by it's column and row.
+     * @param x The column.
+     * @param y The row.
+     * @return The tile, or {@code null} if it's empty or the board doesn't keep colours.
+     */
+    public TileType getTile(int x, int y) {
+        return tiles == null ? null : tiles[y][x];
+    }
+
+    /**
+     * Gets the height of a column, from the floor to its top tile.
+     * @param x The column.
+     * @return The height, or 0 if the column is empty.
+     */
+    public int getColumnHeight(int x) {
+        return heights[x];
+    }
+
+    /**
+     * Gets the deepest hole of a column below {@code TOP_OUT_ROW}, which is
+     * the lowest empty tile with a filled tile right above it.
+     * @param x The column.
+     * @return The row of the hole, or -1 if there's none.
+     */
+    public int getDeepestHole(int x) {
+        return deepestHoles[x];
+    }
+
+    /**
+     * Gets the number of empty tiles below the top tile of every column.
+     * @return The number of holes.
+     */
+    public int getHoles() {
+        return totalHoles;
+    }
+
+    /**
+     * Gets the number of filled tiles above the deepest hole of every column.
+     * @return The number of covered tiles.
+     */
+    public int getCovered() {
+        return totalCovered;
+    }
+
+    /**
+     * Gets the sum of the heights of every filled tile, counting the bottom
+     * row as 1.
+     * @return The summed tile heights.
+     */
+    public int getTileHeights() {
+        return totalTileHeight;
+    }
+
+    /**
+     * Gets the sum of the height differences between neighbouring columns.
+     * @return The bumpiness.
+     */
+    public int getBumpiness() {
+        return bumpiness;
+    }
+
+    /**
+     * Measures the columns from {@code first} to {@code last} again and
+     * updates the totals.
+     * @param first The first column to update.
+     * @param last The last column to update.
+     */
+    private void updateColumns(int first, int last) {
+        for(int x = first; x <= last; x++) {
+            totalHoles -= holes[x];
+            totalCovered -= covered[x];
+            totalTileHeight -= tileHeights[x];
+
+            int height = 0;
+            int hole = 0;
+            int deepest = -1;
+            int filled = 0;
+            int coveredTiles = 0;
+            int tileHeight = 0;
+            boolean wasFilled = false;
+            for(int y = 0; y < ROW_COUNT; y++) {
+                if(((rows[y] >> x) & 1) != 0) {
+                    if(height == 0) {
+                        height = ROW_COUNT - y;
+                    }
+                    tileHeight += ROW_COUNT - y;
+                    filled++;
+                    wasFilled = true;
+                } else {
+                    if(height != 0) {
+                        hole++;
+                    }
+                    if(wasFilled && y > TOP_OUT_ROW) {
+                        deepest = y;
+                        coveredTiles = filled;
+                    }
+                    wasFilled = false;
+                }
+            }
+            heights[x] = height;
+            holes[x] = hole;
+            deepestHoles[x] = deepest;
+            covered[x] = coveredTiles;
+            tileHeights[x] = tileHeight;
+
+            totalHoles += hole;
+            totalCovered += coveredTiles;
+            totalTileHeight += tileHeight;
+        }
+
+        bumpiness = 0;
+        for(int x = 0; x < COL_COUNT - 1; x++) {
+            bumpiness += Math.abs(heights[x] - heights[x + 1]);
+        }
+    }
+
+    /**
+     * Moves a piece row mask from column 0 to column {@code x}.
+     * @param mask The row mask of the piece.
+     * @param x The column of the piece, which may be negative for pieces
+     * with a left inset.
+     * @return The shifted mask.
+     */
+    static int shift(int mask, int x) {
+        return x >= 0 ? mask << x : mask >>> -x;
+    }
+
+}
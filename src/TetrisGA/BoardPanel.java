@@ -1,18 +1,15 @@
 package TetrisGA;
 
-import com.sun.deploy.uitoolkit.ui.ConsoleController;
-
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
-import java.util.Arrays;
 
 import javax.swing.JPanel;
 
 /**
- * The {@code BoardPanel} class is responsible for displaying the game grid and
- * handling things related to the game board.
+ * The {@code BoardPanel} class is responsible for displaying the game grid
+ * of a {@link Board}.
  * @author Brendan Jones
  *
  */
@@ -23,31 +20,6 @@ public class BoardPanel extends JPanel {
      */
     private static final long serialVersionUID = 5055679736784226108L;
 
- ///
-    public static int ghostX;
-    public static int ghostY;
-
-    private static double calculatedBumbines;
-    private static double calculatedHeight;
-    private static double calculatedLines;
-    private static double calculatedHoles;
-    private static double calculatedBlockades;
-    private static double points;
-    public static double heightWeight;
-    public static double linesWeight;
-    public static double holesWeight;
-    public static double bumbinesWeight;
-    public static double blockadesWeight;
-
-
-    static int pieceCol ;
-    static int pieceRow ;
-    static int rotation ;
-
-
-
-
-    ///
     /**
      * Minimum color component values for tiles. This is required if we
      * want to show both light and dark shading on our tiles.
@@ -68,22 +40,22 @@ public class BoardPanel extends JPanel {
     /**
      * The number of columns on the board.
      */
-    public static final int COL_COUNT = 10;
+    public static final int COL_COUNT = Board.COL_COUNT;
 
     /**
      * The number of visible rows on the board.
      */
-    private static final int VISIBLE_ROW_COUNT = 20;
+    private static final int VISIBLE_ROW_COUNT = Board.VISIBLE_ROW_COUNT;
 
     /**
      * The number of rows that are hidden from view.
      */
-    public static final int HIDDEN_ROW_COUNT = 2;
+    public static final int HIDDEN_ROW_COUNT = Board.HIDDEN_ROW_COUNT;
 
     /**
      * The total number of rows that the board contains.
      */
-    public static final int ROW_COUNT = VISIBLE_ROW_COUNT + HIDDEN_ROW_COUNT;
+    public static final int ROW_COUNT = Board.ROW_COUNT;
 
     /**
      * The number of pixels that a tile takes up.
@@ -125,16 +97,10 @@ public class BoardPanel extends JPanel {
      */
     private static final Font SMALL_FONT = new Font("Tahoma", Font.BOLD, 12);
 
-    public static int[][] tablica;
     /**
      * The Tetris instance.
      */
-    static public Tetris tetris;
-
-    /**
-     * The tiles that make up the board.
-     */
-    public static TileType[][] tiles;
+    private Tetris tetris;
 
     /**
      * Crates a new GameBoard instance.
@@ -142,174 +108,11 @@ public class BoardPanel extends JPanel {
      */
     public BoardPanel(Tetris tetris) {
         this.tetris = tetris;
-        ////
-        tiles = new TileType[ROW_COUNT][COL_COUNT];
-
-        tablica = new int[ROW_COUNT+HIDDEN_ROW_COUNT][COL_COUNT];
-
-
 
         setPreferredSize(new Dimension(PANEL_WIDTH, PANEL_HEIGHT));
         setBackground(Color.BLACK);
     }
 
-    /**
-     * Resets the board and clears away any tiles.
-     */
-    public void clear() {
-		/*
-		 * Loop through every tile index and set it's value
-		 * to null to clear the board.
-		 */
-        for(int i = 0; i < ROW_COUNT; i++) {
-            for(int j = 0; j < COL_COUNT; j++) {
-                tiles[i][j] = null;
-            }
-        }
-    }
-
-    /**
-     * Determines whether or not a piece can be placed at the coordinates.
-     * @param type THe type of piece to use.
-     * @param x The x coordinate of the piece.
-     * @param y The y coordinate of the piece.
-     * @param rotation The rotation of the piece.
-     * @return Whether or not the position is valid.
-     */
-    public static boolean isValidAndEmpty(TileType type, int x, int y, int rotation) {
-
-        //Ensure the piece is in a valid column.
-        if(x < -type.getLeftInset(rotation) || x + type.getDimension() - type.getRightInset(rotation) >= COL_COUNT) {
-            return false;
-        }
-
-        //Ensure the piece is in a valid row.
-       if(y < -type.getTopInset(rotation) || y + type.getDimension() - type.getBottomInset(rotation) >= ROW_COUNT) {
-            return false;
-        }
-
-		/*
-		 * Loop through every tile in the piece and see if it conflicts with an existing tile.
-		 *
-		 * Note: It's fine to do this even though it allows for wrapping because we've already
-		 * checked to make sure the piece is in a valid location.
-		 */
-        for(int col = 0; col < type.getDimension(); col++) {
-            for(int row = 0; row < type.getDimension(); row++) {
-                if(type.isTile(col, row, rotation) && isOccupied(x + col, y + row)) {
-                    return false;
-                }
-            }
-        }
-        return true;
-    }
-
-    /**
-     * Adds a piece to the game board. Note: Doesn't check for existing pieces,
-     * and will overwrite them if they exist.
-     * @param type The type of piece to place.
-     * @param x The x coordinate of the piece.
-     * @param y The y coordinate of the piece.
-     * @param rotation The rotation of the piece.
-     */
-    public void addPiece(TileType type, int x, int y, int rotation) {
-		/*
-		 * Loop through every tile within the piece and add it
-		 * to the board only if the boolean that represents that
-		 * tile is set to true.
-		 */
-        for(int col = 0; col < type.getDimension(); col++) {
-            for(int row = 0; row < type.getDimension(); row++) {
-                if(type.isTile(col, row, rotation)) {
-                    setTile(col + x, row + y, type);
-                }
-            }
-        }
-    }
-
-    /**
-     * Checks the board to see if any lines have been cleared, and
-     * removes them from the game.
-     * @return The number of lines that were cleared.
-     */
-    public int checkLines() {
-        int completedLines = 0;
-
-		/*
-		 * Here we loop through every line and check it to see if
-		 * it's been cleared or not. If it has, we increment the
-		 * number of completed lines and check the next row.
-		 *
-		 * The checkLine function handles clearing the line and
-		 * shifting the rest of the board down for us.
-		 */
-        for(int row = 0; row < ROW_COUNT; row++) {
-            if(checkLine(row)) {
-                completedLines++;
-            }
-        }
-        return completedLines;
-    }
-
-    /**
-     * Checks whether or not {@code row} is full.
-     * @param line The row to check.
-     * @return Whether or not this row is full.
-     */
-    private boolean checkLine(int line) {
-		/*
-		 * Iterate through every column in this row. If any of them are
-		 * empty, then the row is not full.
-		 */
-        for(int col = 0; col < COL_COUNT; col++) {
-            if(!isOccupied(col, line)) {
-                return false;
-            }
-        }
-
-		/*
-		 * Since the line is filled, we need to 'remove' it from the game.
-		 * To do this, we simply shift every row above it down by one.
-		 */
-        for(int row = line - 1; row >= 0; row--) {
-            for(int col = 0; col < COL_COUNT; col++) {
-                setTile(col, row + 1, getTile(col, row));
-            }
-        }
-        return true;
-    }
-
-
-    /**
-     * Checks to see if the tile is already occupied.
-     * @param x The x coordinate to check.
-     * @param y The y coordinate to check.
-     * @return Whether or not the tile is occupied.
-     */
-    private static boolean isOccupied(int x, int y) {
-        return tiles[y][x] != null;
-    }
-
-    /**
-     * Sets a tile located at the desired column and row.
-     * @param x The column.
-     * @param y The row.
-     * @param type The value to set to the tile to.
-     */
-    private void setTile(int  x, int y, TileType type) {
-        tiles[y][x] = type;
-    }
-
-    /**
-     * Gets a tile by it's column and row.
-     * @param x The column.
-     * @param y The row.
-     * @return The tile.
-     */
-    public static TileType getTile(int x, int y) {
-        return tiles[y][x];
-    }
-
     @Override
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
@@ -346,10 +149,11 @@ public class BoardPanel extends JPanel {
 			 */
 
 
+            Board board = tetris.getBoard();
             for(int x = 0; x < COL_COUNT; x++) {
 
                 for(int y = HIDDEN_ROW_COUNT; y < ROW_COUNT; y++) {
-                    TileType tile = getTile(x, y);
+                    TileType tile = board.getTile(x, y);
                     if(tile != null) {
                         drawTile(tile, x * TILE_SIZE, (y - HIDDEN_ROW_COUNT) * TILE_SIZE, g);
 
@@ -368,10 +172,10 @@ public class BoardPanel extends JPanel {
 			 * part of the board, it would need to be removed every frame which
 			 * would just be slow and confusing.
 			 */
-             TileType type = tetris.getPieceType();
-            pieceCol = tetris.getPieceCol();
-              pieceRow = tetris.getPieceRow();
-              rotation = tetris.getPieceRotation();
+            TileType type = tetris.getPieceType();
+            int pieceCol = tetris.getPieceCol();
+            int pieceRow = tetris.getPieceRow();
+            int rotation = tetris.getPieceRotation();
 
             //Draw the piece onto the board.
             for(int col = 0; col < type.getDimension(); col++) {
@@ -384,35 +188,21 @@ public class BoardPanel extends JPanel {
             }
 
 			/*
-			 * Draw the ghost (semi-transparent piece that shows where the current piece will land). I couldn't think of
-			 * a better way to implement this so it'll have to do for now. We simply take the current position and move
-			 * down until we hit a row that would cause a collision.
+			 * Draw the ghost (semi-transparent piece that shows where the current piece will land). The board
+			 * works out the landing row from the heights of the columns under the piece.
 			 */
             Color base = type.getBaseColor();
             base = new Color(base.getRed(), base.getGreen(), base.getBlue(), 20);
-            for(int lowest = pieceRow; lowest < ROW_COUNT; lowest++) {
-                //If no collision is detected, try the next row.
-                if(isValidAndEmpty(type, pieceCol, lowest, rotation)) {
-                    continue;
-                }
-
-                //Draw the ghost one row higher than the one the collision took place at.
-                lowest--;
+            int lowest = board.getDropRow(type, pieceCol, pieceRow, rotation);
 
-                //Draw the ghost piece.
-                for(int col = 0; col < type.getDimension(); col++) {
-                    for(int row = 0; row < type.getDimension(); row++) {
-                        if(lowest + row >= 2 && type.isTile(col, row, rotation)) {
-                            drawTile(base, base.brighter(), base.darker(), (pieceCol + col) * TILE_SIZE, (lowest + row - HIDDEN_ROW_COUNT) * TILE_SIZE, g);
+            //Draw the ghost piece.
+            for(int col = 0; col < type.getDimension(); col++) {
+                for(int row = 0; row < type.getDimension(); row++) {
+                    if(lowest + row >= 2 && type.isTile(col, row, rotation)) {
+                        drawTile(base, base.brighter(), base.darker(), (pieceCol + col) * TILE_SIZE, (lowest + row - HIDDEN_ROW_COUNT) * TILE_SIZE, g);
 
-                        }
                     }
                 }
-
-
-
-
-                break;
             }
 
 			/*
@@ -483,103 +273,4 @@ public class BoardPanel extends JPanel {
     }
 
 
-
-
-////////////////////////////////////////////////////// SCORE /////////////////////////////
-
-    //na 100% dobrze
-    private static int calculateHoles(int tab[][]) {
-        int holesCounter = 0;
-        for(int i = 0; i < 10; i++)
-            for(int j = 0; j < 21; j++) {
-                if(tab[j][i] != 0 && tab[j+1][i] == 0) {
-                    while(tab[j+1][i] == 0) {
-                        holesCounter++;
-                        j++;
-                        if (j == 21) {break;}
-                    }
-                }
-            }
-        return holesCounter;
-    }
-
-    //na 100% dobrze
-    private static int calculateBlockades(int tab[][]) {
-        int blockade = 0;
-        for(int i = 0; i < 10; i++){
-            for(int j = 21; j >4 ; j--) {
-                if(tab[j][i] == 0 && tab[j-1][i] != 0){
-                    for(int k = j; k>=0; k--){
-                        if (tab[k][i] != 0){
-                            blockade++;
-                        }
-                        j--;
-                    }
-                }
-            }
-        }
-        return blockade;
-    }
-
-    private static int calculateHeight(int tab[][]) {
-        int height = 0;
-            for(int i = 0; i < 10; i++){
-                for(int j = 0; j < 21; j++){
-                    if(tab[j][i] != 0) {
-                        height = height+ 22-j;
-                    }
-                }
-            }
-        return height;
-    }
-
-
-    public static int calculateLines(int tab[][]) {
-        int clearedLines = 0;
-        for(int i = 21; i >= 0; i--) {
-            boolean isClear = true;
-            for(int j = 0; j <10; j++) {
-                if(tab[i][j]==0){
-                    isClear=false;
-                }
-            }
-            if (isClear){
-                clearedLines++;
-            }
-        }
-        return clearedLines;
-    }
-
-
-    private static int calculateBumpines(int tab[][]) {
-        int[] heights = new int[10];
-        Arrays.fill(heights, 0);
-
-        for (int i = 0; i < 10; i++)
-            for (int j = 0; j < 22; j++) {
-                if (tab[j][i] != 0) {
-                    heights[i] = 22 - j;
-                    break;
-                }
-            }
-        int bumpiness = 0;
-        for (int i = 0; i < heights.length - 1; i++) {
-            bumpiness += Math.abs(heights[i] - heights[i + 1]);
-            //System.out.print(heights[i]+" ");
-        }
-        //System.out.println();
-        return bumpiness;
-    }
-
-    public static double calculatePoints(int tab[][]){
-        calculatedHeight = calculateHeight(tab)*heightWeight;
-        calculatedLines = calculateLines(tab)*linesWeight;
-        calculatedHoles = calculateHoles(tab)* holesWeight;
-        calculatedBumbines = calculateBumpines(tab)* bumbinesWeight;
-        calculatedBlockades = calculateBlockades(tab)*blockadesWeight;
-//
-        points = calculatedHeight+calculatedLines+calculatedHoles+ calculatedBumbines+calculatedBlockades;
-        return points;
-    }
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,305 @@
+package TetrisGA;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/**
+ * The {@code Checkpoint} class saves everything a run of the genetic algorithm
+ * needs to carry on where it stopped: the evaluated population column by
+ * column, how far the run got, the state of its random number generator, the
+ * number of rounds its evaluator played and its fitness cache. A resumed run
+ * plays no game twice.
+ *
+ * The file is binary, big-endian, and starts with {@code MAGIC} and
+ * {@code VERSION}. Nothing in it is deserialized as a Java object, so a
+ * checkpoint from elsewhere, as a warm start reads, can't run code. It is written to a temporary file first and then renamed
+ * over the old checkpoint, so a crash while writing leaves the old one intact.
+ *
+ */
+public final class Checkpoint {
+
+    /**
+     * The first four bytes of a checkpoint, "TGAC".
+     */
+    public static final int MAGIC = 0x54474143;
+
+    /**
+     * The version of the format. Version 2 added the history records of the
+     * population, version 3 the sequences of every cache entry, and version 4
+     * saves the random number generator as numbers instead of serializing it.
+     */
+    public static final int VERSION = 4;
+
+    /**
+     * The seed of the run.
+     */
+    private final long seed;
+
+    /**
+     * Whether the run is steady-state rather than generational.
+     */
+    private final boolean steadyState;
+
+    /**
+     * The number of generations evaluated, or of children evaluated in a
+     * steady-state run.
+     */
+    private final long progress;
+
+    /**
+     * The number of rounds the evaluator played.
+     */
+    private final long rounds;
+
+    /**
+     * The random number generator the run breeds with.
+     */
+    private final StatefulRandom random;
+
+    /**
+     * The population, with its evaluation.
+     */
+    private final Population population;
+
+    /**
+     * Creates a checkpoint.
+     * @param seed The seed of the run.
+     * @param steadyState Whether the run is steady-state rather than generational.
+     * @param progress The number of generations, or steady-state children, evaluated.
+     * @param rounds The number of rounds the evaluator played.
+     * @param random The random number generator the run breeds with.
+     * @param population The population, with its evaluation.
+     */
+    public Checkpoint(long seed, boolean steadyState, long progress, long rounds, StatefulRandom random, Population population) {
+        this.seed = seed;
+        this.steadyState = steadyState;
+        this.progress = progress;
+        this.rounds = rounds;
+        this.random = random;
+        this.population = population;
+    }
+
+    /**
+     * Writes the checkpoint atomically.
+     * @param path The path of the checkpoint.
+     * @param cache The fitness cache to save with it, or {@code null}.
+     * @throws IOException If the checkpoint can't be written.
+     */
+    public void write(String path, FitnessCache cache) throws IOException {
+        File target = new File(path);
+        File temp = new File(path + ".tmp");
+        FileOutputStream file = new FileOutputStream(temp);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(seed);
+            out.writeBoolean(steadyState);
+            out.writeLong(progress);
+            out.writeLong(rounds);
+
+            random.write(out);
+
+            int size = population.size();
+            out.writeInt(size);
+            for(int gene = 0; gene < Population.GENE_COUNT; gene++) {
+                for(int i = 0; i < size; i++) {
+                    out.writeDouble(population.getGene(i, gene));
+                }
+            }
+            for(int i = 0; i < size; i++) {
+                out.writeDouble(population.getFitness(i));
+            }
+            for(int i = 0; i < size; i++) {
+                out.writeInt(population.getGames(i));
+            }
+            for(int i = 0; i < size; i++) {
+                out.writeDouble(population.getVariance(i));
+            }
+            for(int i = 0; i < size; i++) {
+                out.writeLong(population.getId(i));
+            }
+
+            out.writeBoolean(cache != null);
+            if(cache != null) {
+                cache.write(out);
+            }
+            out.flush();
+            file.getFD().sync();
+        } finally {
+            file.close();
+        }
+
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads a checkpoint.
+     * @param path The path of the checkpoint.
+     * @param cache The fitness cache to fill with the saved one, or {@code null}.
+     * @return The checkpoint.
+     * @throws IOException If the checkpoint can't be read or isn't one.
+     */
+    public static Checkpoint read(String path, FitnessCache cache) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 1 << 16));
+        try {
+            if(in.readInt() != MAGIC) {
+                throw new IOException(path + " is not a checkpoint");
+            }
+            int version = in.readInt();
+            if(version < 1 || version > VERSION) {
+                throw new IOException(path + " has checkpoint version " + version + ", expected " + VERSION);
+            }
+            long seed = in.readLong();
+            boolean steadyState = in.readBoolean();
+            long progress = in.readLong();
+            long rounds = in.readLong();
+
+            StatefulRandom random;
+            if(version >= 4) {
+                random = StatefulRandom.read(in);
+            } else {
+                byte[] state = new byte[in.readInt()];
+                in.readFully(state);
+                random = loadSerializedRandom(state);
+            }
+
+            int size = in.readInt();
+            Population population = new Population(size);
+            for(int gene = 0; gene < Population.GENE_COUNT; gene++) {
+                for(int i = 0; i < size; i++) {
+                    population.setGene(i, gene, in.readDouble());
+                }
+            }
+            double[] fitness = new double[size];
+            int[] games = new int[size];
+            for(int i = 0; i < size; i++) {
+                fitness[i] = in.readDouble();
+            }
+            for(int i = 0; i < size; i++) {
+                games[i] = in.readInt();
+            }
+            for(int i = 0; i < size; i++) {
+                population.setEvaluation(i, fitness[i], games[i], in.readDouble());
+            }
+            for(int i = 0; version >= 2 && i < size; i++) {
+                population.setId(i, in.readLong());
+            }
+
+            if(in.readBoolean() && cache != null) {
+                cache.read(in, version >= 3);
+            }
+            return new Checkpoint(seed, steadyState, progress, rounds, random, population);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads the serialized {@code Random} of a checkpoint before version 4.
+     * No class but {@code Random} is resolved, and its state is taken from
+     * the fields it reads, so the run carries on with the same numbers.
+     */
+    private static StatefulRandom loadSerializedRandom(byte[] state) throws IOException {
+        final ObjectInputStream.GetField[] fields = new ObjectInputStream.GetField[1];
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(state)) {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                if(!desc.getName().equals(Random.class.getName())) {
+                    throw new InvalidClassException(desc.getName(), "not allowed in a checkpoint");
+                }
+                return super.resolveClass(desc);
+            }
+
+            @Override
+            protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+                throw new InvalidClassException("proxy", "not allowed in a checkpoint");
+            }
+
+            @Override
+            public ObjectInputStream.GetField readFields() throws IOException, ClassNotFoundException {
+                fields[0] = super.readFields();
+                return fields[0];
+            }
+        };
+        try {
+            if(!(in.readObject() instanceof Random) || fields[0] == null) {
+                throw new IOException("Corrupt random number generator state");
+            }
+            return new StatefulRandom(fields[0].get("seed", 0L), fields[0].get("haveNextNextGaussian", false),
+                    fields[0].get("nextNextGaussian", 0.0));
+        } catch(ClassNotFoundException e) {
+            throw new IOException("Corrupt random number generator state", e);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Gets the seed of the run.
+     * @return The seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Checks whether the run is steady-state rather than generational.
+     * @return Whether the run is steady-state.
+     */
+    public boolean isSteadyState() {
+        return steadyState;
+    }
+
+    /**
+     * Gets the number of generations evaluated, or of children evaluated in
+     * a steady-state run.
+     * @return The progress.
+     */
+    public long getProgress() {
+        return progress;
+    }
+
+    /**
+     * Gets the number of rounds the evaluator played.
+     * @return The number of rounds.
+     */
+    public long getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Gets the random number generator the run breeds with.
+     * @return The generator.
+     */
+    public StatefulRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * Gets the population, with its evaluation.
+     * @return The population.
+     */
+    public Population getPopulation() {
+        return population;
+    }
+
+}
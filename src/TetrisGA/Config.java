@@ -0,0 +1,279 @@
+package TetrisGA;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The {@code Config} class holds the settings of a run: the genetic algorithm,
+ * the fitness games and the viewer. Every setting has a default, which can be
+ * overridden by a properties file and then by command line flags:
+ *
+ * <pre>
+ * --config=run.properties --populationSize=1000 --threads 8
+ * </pre>
+ *
+ * An empty value means the setting is worked out at run time, like the
+ * number of threads from the number of cores, or that there is no limit, for
+ * {@code pieceBudget}, {@code maxScore} and {@code targetFitness}, or that a
+ * feature is off, for {@code cacheSize}, {@code checkpoint}, {@code metrics},
+ * {@code history}, {@code warmStart} and {@code listen}.
+ *
+ * The defaults measure fitness the way the algorithm always has: every
+ * chromosome plays its games to the end, on sequences of its own. Common
+ * random numbers, racing, the cache and the game limits are opt-in, since
+ * each of them changes the scores a run reports.
+ * Unknown settings are rejected, so a typo in a sweep fails instead of
+ * silently running with the default.
+ *
+ */
+public final class Config {
+
+    /**
+     * The settings and their defaults, in the order they are printed.
+     */
+    private static final String[][] DEFAULTS = {
+        {"populationSize", "200"},
+        {"topChroms", ""},
+        {"numberOfGames", "8"},
+        {"mutationRate", "4"},
+        {"numberOfGenerations", "10"},
+        {"geneMin", "-100"},
+        {"geneMax", "100"},
+        {"pieceBudget", ""},
+        {"maxScore", ""},
+        {"threads", ""},
+        {"seed", ""},
+        {"randomizer", "UNIFORM"},
+        {"commonRandomNumbers", "false"},
+        {"racing", "false"},
+        {"cacheSize", ""},
+        {"steadyState", "false"},
+        {"selection", "TRUNCATION"},
+        {"checkpoint", ""},
+        {"checkpointEvery", "1"},
+        {"resume", "false"},
+        {"metrics", ""},
+        {"history", ""},
+        {"warmStart", ""},
+        {"warmStartElites", ""},
+        {"seeding", "GAUSSIAN"},
+        {"warmStartSigma", "0.05"},
+        {"targetFitness", ""},
+        {"islands", "1"},
+        {"island", "0"},
+        {"migrationDir", ""},
+        {"migrationEvery", "5"},
+        {"migrants", ""},
+        {"topology", "RING"},
+        {"migrationTimeout", "60"},
+        {"listen", ""},
+        {"coordinator", "localhost:7077"},
+        {"batchSize", "16"},
+        {"workerTimeout", "300"},
+        {"localWorkers", "0"},
+        {"geneticMode", "false"},
+        {"manualChromosome", "-2.841884818353364,90.33398858013996,-86.29884523976246,-17.97583422646018,-3.496915438232847"},
+    };
+
+    /**
+     * The value of every setting.
+     */
+    private final Properties values = new Properties();
+
+    /**
+     * Creates a configuration with every setting at its default.
+     */
+    public Config() {
+        for(String[] setting : DEFAULTS) {
+            values.setProperty(setting[0], setting[1]);
+        }
+    }
+
+    /**
+     * Creates a configuration from command line arguments. A
+     * {@code --config=<file>} flag loads a properties file first, and the
+     * other flags override it.
+     * @param args The arguments.
+     * @return The configuration.
+     * @throws IOException If the properties file can't be read.
+     * @throws IllegalArgumentException If an argument isn't a known flag.
+     */
+    public static Config parse(String[] args) throws IOException {
+        List<String> keys = new ArrayList<String>();
+        List<String> flagValues = new ArrayList<String>();
+        for(int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if(!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Expected a --flag but got " + arg);
+            }
+            int equals = arg.indexOf('=');
+            if(equals >= 0) {
+                keys.add(arg.substring(2, equals));
+                flagValues.add(arg.substring(equals + 1));
+            } else if(i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                keys.add(arg.substring(2));
+                flagValues.add(args[++i]);
+            } else {
+                //A flag on its own switches a setting on.
+                keys.add(arg.substring(2));
+                flagValues.add("true");
+            }
+        }
+
+        Config config = new Config();
+        int file = keys.indexOf("config");
+        if(file >= 0) {
+            config.load(flagValues.get(file));
+        }
+        for(int i = 0; i < keys.size(); i++) {
+            if(i != file) {
+                config.set(keys.get(i), flagValues.get(i));
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Overrides settings with the ones in a properties file.
+     * @param path The path of the file.
+     * @throws IOException If the file can't be read.
+     * @throws IllegalArgumentException If the file has an unknown setting.
+     */
+    public void load(String path) throws IOException {
+        Properties file = new Properties();
+        InputStream in = new FileInputStream(path);
+        try {
+            file.load(in);
+        } finally {
+            in.close();
+        }
+        for(String key : file.stringPropertyNames()) {
+            set(key, file.getProperty(key).trim());
+        }
+    }
+
+    /**
+     * Overrides a setting.
+     * @param key The name of the setting.
+     * @param value The new value.
+     * @throws IllegalArgumentException If there is no such setting.
+     */
+    public void set(String key, String value) {
+        if(values.getProperty(key) == null) {
+            throw new IllegalArgumentException("Unknown setting " + key);
+        }
+        values.setProperty(key, value);
+    }
+
+    /**
+     * Checks whether a setting has a value or is left to be worked out.
+     * @param key The name of the setting.
+     * @return Whether the setting has a value.
+     */
+    public boolean isSet(String key) {
+        return !get(key).isEmpty();
+    }
+
+    /**
+     * Gets a setting as it was given.
+     * @param key The name of the setting.
+     * @return The value, empty if the setting is left to be worked out.
+     */
+    public String getString(String key) {
+        return get(key);
+    }
+
+    /**
+     * Gets a setting as a whole number.
+     * @param key The name of the setting.
+     * @param fallback The value to use if the setting is empty.
+     * @return The value.
+     */
+    public int getInt(String key, int fallback) {
+        return isSet(key) ? Integer.parseInt(get(key)) : fallback;
+    }
+
+    /**
+     * Gets a setting as a long number.
+     * @param key The name of the setting.
+     * @param fallback The value to use if the setting is empty.
+     * @return The value.
+     */
+    public long getLong(String key, long fallback) {
+        return isSet(key) ? Long.parseLong(get(key)) : fallback;
+    }
+
+    /**
+     * Gets a setting as a number.
+     * @param key The name of the setting.
+     * @param fallback The value to use if the setting is empty.
+     * @return The value.
+     */
+    public double getDouble(String key, double fallback) {
+        return isSet(key) ? Double.parseDouble(get(key)) : fallback;
+    }
+
+    /**
+     * Gets a setting as a yes or no.
+     * @param key The name of the setting.
+     * @return The value.
+     */
+    public boolean getBoolean(String key) {
+        String value = get(key);
+        if(!value.equals("true") && !value.equals("false")) {
+            throw new IllegalArgumentException(key + " must be true or false, not " + value);
+        }
+        return value.equals("true");
+    }
+
+    /**
+     * Gets a setting as a constant of an enum.
+     * @param key The name of the setting.
+     * @param type The enum.
+     * @return The value.
+     */
+    public <E extends Enum<E>> E getEnum(String key, Class<E> type) {
+        return Enum.valueOf(type, get(key).toUpperCase());
+    }
+
+    /**
+     * Gets a setting as a comma separated list of numbers.
+     * @param key The name of the setting.
+     * @return The numbers.
+     */
+    public double[] getDoubles(String key) {
+        String[] parts = get(key).split(",");
+        double[] numbers = new double[parts.length];
+        for(int i = 0; i < parts.length; i++) {
+            numbers[i] = Double.parseDouble(parts[i].trim());
+        }
+        return numbers;
+    }
+
+    private String get(String key) {
+        String value = values.getProperty(key);
+        if(value == null) {
+            throw new IllegalArgumentException("Unknown setting " + key);
+        }
+        return value;
+    }
+
+    /**
+     * Lists every setting in properties file format, so a run can be repeated
+     * with {@code --config}.
+     * @return The settings, one per line.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for(String[] setting : DEFAULTS) {
+            builder.append(setting[0]).append('=').append(values.getProperty(setting[0])).append('\n');
+        }
+        return builder.toString();
+    }
+
+}
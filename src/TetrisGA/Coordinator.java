@@ -0,0 +1,511 @@
+package TetrisGA;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@code Coordinator} class hands fitness games out to {@link Worker}
+ * processes over TCP, so a generation can be played on more cores than one
+ * machine has. Workers connect whenever they like, and the games of a call
+ * to {@code play} are split into batches of {@code batchSize} that go to
+ * whichever worker has room, up to twice its capacity in flight, so it never
+ * waits for the next batch.
+ *
+ * A game is sent as its weights and its seed, and the worker generates the
+ * pieces from the seed, so a game scores the same wherever it's played. A
+ * batch of long games can take far longer than {@code timeoutSeconds}, so
+ * a worker sends a {@code HEARTBEAT} several times per timeout whatever it is
+ * doing. If a worker disconnects, or sends nothing at all for
+ * {@code timeoutSeconds} while it has batches, its batches go back to the
+ * front of the queue for another worker.
+ *
+ * The protocol is binary and big-endian. A worker opens with {@code MAGIC},
+ * {@code VERSION} and its capacity, within {@code HANDSHAKE_SECONDS}, and the
+ * coordinator answers with how often the worker must send a heartbeat, in
+ * milliseconds. Every connection is opened on a thread of its own, so a
+ * client that never sends its opening can't hold up the workers joining
+ * after it. After that the coordinator sends {@code BATCH} messages and the
+ * worker answers each with a {@code RESULT}, in any order, and can send
+ * {@code CAPACITY} when its number of threads changes.
+ *
+ */
+public final class Coordinator {
+
+    /**
+     * The first four bytes a worker sends, "TGAW".
+     */
+    public static final int MAGIC = 0x54474157;
+
+    /**
+     * The version of the protocol. Version 2 added the heartbeat.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * A batch of games: id, randomizer, piece budget, score cap, count, and
+     * the weights and seed of every game.
+     */
+    public static final byte BATCH = 1;
+
+    /**
+     * The outcome of a batch: id, count, and the score, lines, pieces and
+     * survival of every game.
+     */
+    public static final byte RESULT = 2;
+
+    /**
+     * A worker's new number of threads.
+     */
+    public static final byte CAPACITY = 3;
+
+    /**
+     * A sign of life from a worker, with nothing else in it.
+     */
+    public static final byte HEARTBEAT = 4;
+
+    /**
+     * How many heartbeats a worker sends per {@code timeoutSeconds}, so a
+     * late or delayed one doesn't get it dropped.
+     */
+    private static final int HEARTBEATS_PER_TIMEOUT = 4;
+
+    /**
+     * How long a new connection has to send its opening, in seconds.
+     */
+    private static final int HANDSHAKE_SECONDS = 10;
+
+    /**
+     * The games of one call to {@code play}.
+     */
+    private static final class Round {
+
+        private final double[] weights;
+
+        private final long[] seeds;
+
+        private final Randomizer randomizer;
+
+        private final int pieceBudget;
+
+        private final int scoreCap;
+
+        private final GameResult[] results;
+
+        private int remaining;
+
+        private Round(double[] weights, long[] seeds, Randomizer randomizer, int pieceBudget, int scoreCap, int batches) {
+            this.weights = weights;
+            this.seeds = seeds;
+            this.randomizer = randomizer;
+            this.pieceBudget = pieceBudget;
+            this.scoreCap = scoreCap;
+            this.results = new GameResult[seeds.length];
+            this.remaining = batches;
+        }
+    }
+
+    /**
+     * A slice of the games of a round, the unit that is sent and retried.
+     */
+    private static final class Batch {
+
+        private final long id;
+
+        private final Round round;
+
+        private final int first;
+
+        private final int count;
+
+        private Batch(long id, Round round, int first, int count) {
+            this.id = id;
+            this.round = round;
+            this.first = first;
+            this.count = count;
+        }
+    }
+
+    private final ServerSocket server;
+
+    private final int batchSize;
+
+    private final int timeoutSeconds;
+
+    /**
+     * The batches waiting for a worker.
+     */
+    private final LinkedBlockingDeque<Batch> pending = new LinkedBlockingDeque<Batch>();
+
+    private final AtomicLong nextBatch = new AtomicLong();
+
+    private final AtomicInteger workers = new AtomicInteger();
+
+    private final AtomicLong retries = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * Starts listening for workers.
+     * @param port The port to listen on.
+     * @param batchSize The number of games sent at a time.
+     * @param timeoutSeconds How long a worker with batches may stay silent before it's given up on.
+     * @throws IOException If the port can't be opened.
+     */
+    public Coordinator(int port, int batchSize, int timeoutSeconds) throws IOException {
+        this.server = new ServerSocket(port);
+        this.batchSize = batchSize;
+        this.timeoutSeconds = timeoutSeconds;
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "coordinator");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Plays games on the workers, waiting for all of them.
+     * @param weights The weights of every game, {@code Population.GENE_COUNT} per game.
+     * @param seeds The seed of the pieces of every game.
+     * @param randomizer How the pieces are drawn.
+     * @param pieceBudget The most pieces a game may place.
+     * @param scoreCap The score a game stops at.
+     * @return The outcome of every game.
+     */
+    public GameResult[] play(double[] weights, long[] seeds, Randomizer randomizer, int pieceBudget, int scoreCap) {
+        int batches = (seeds.length + batchSize - 1) / batchSize;
+        Round round = new Round(weights, seeds, randomizer, pieceBudget, scoreCap, batches);
+        if(batches == 0) {
+            return round.results;
+        }
+        if(workers.get() == 0) {
+            System.out.println("Waiting for workers on port " + server.getLocalPort());
+        }
+        for(int first = 0; first < seeds.length; first += batchSize) {
+            pending.addLast(new Batch(nextBatch.getAndIncrement(), round, first, Math.min(batchSize, seeds.length - first)));
+        }
+        synchronized(round) {
+            while(round.remaining > 0) {
+                try {
+                    round.wait();
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the workers", e);
+                }
+            }
+        }
+        return round.results;
+    }
+
+    /**
+     * Gets the number of workers connected.
+     * @return The number of workers.
+     */
+    public int getWorkers() {
+        return workers.get();
+    }
+
+    /**
+     * Gets the port the coordinator listens on, which is picked by the system
+     * when it was created with port 0.
+     * @return The port.
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Gets the number of batches sent again after their worker was lost.
+     * @return The number of retries.
+     */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * Stops listening and disconnects every worker, which makes them exit.
+     */
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+        } catch(IOException e) {
+            //Closing anyway.
+        }
+    }
+
+    private void accept() {
+        while(!closed) {
+            final Socket socket;
+            try {
+                socket = server.accept();
+            } catch(IOException e) {
+                if(!closed) {
+                    System.out.println("Coordinator stopped accepting workers: " + e.getMessage());
+                }
+                return;
+            }
+            Thread join = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    join(socket);
+                }
+            }, "coordinator-join " + socket.getRemoteSocketAddress());
+            join.setDaemon(true);
+            join.start();
+        }
+    }
+
+    /**
+     * Reads the opening of a new connection, and starts playing games on
+     * it if it's a worker.
+     */
+    private void join(Socket socket) {
+        try {
+            new Connection(socket).start();
+        } catch(IOException e) {
+            System.out.println("Worker " + socket.getRemoteSocketAddress() + " rejected: " + e.getMessage());
+            closeQuietly(socket);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch(IOException e) {
+            //Already gone.
+        }
+    }
+
+    /**
+     * A connected worker, with one thread sending it batches and one reading
+     * its results.
+     */
+    private final class Connection {
+
+        private final Socket socket;
+
+        private final DataInputStream in;
+
+        private final DataOutputStream out;
+
+        private final String name;
+
+        /**
+         * The batches sent and not answered yet, guarded by {@code this}.
+         */
+        private final Map<Long, Batch> inFlight = new HashMap<Long, Batch>();
+
+        private int capacity;
+
+        private boolean lost;
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.name = String.valueOf(socket.getRemoteSocketAddress());
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(HANDSHAKE_SECONDS * 1000);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            if(in.readInt() != MAGIC) {
+                throw new IOException("not a worker");
+            }
+            int version = in.readInt();
+            if(version != VERSION) {
+                throw new IOException("protocol version " + version + ", expected " + VERSION);
+            }
+            capacity = Math.max(1, in.readInt());
+            out.writeInt(Math.max(1, timeoutSeconds * 1000 / HEARTBEATS_PER_TIMEOUT));
+            out.flush();
+            socket.setSoTimeout(timeoutSeconds * 1000);
+        }
+
+        private void start() {
+            workers.incrementAndGet();
+            System.out.println("Worker " + name + " joined with capacity " + capacity);
+            Thread sender = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    send();
+                }
+            }, "coordinator-send " + name);
+            Thread receiver = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    receive();
+                }
+            }, "coordinator-receive " + name);
+            sender.setDaemon(true);
+            receiver.setDaemon(true);
+            sender.start();
+            receiver.start();
+        }
+
+        /**
+         * Sends batches while the worker has room for them.
+         */
+        private void send() {
+            try {
+                while(true) {
+                    synchronized(this) {
+                        while(!lost && inFlight.size() >= capacity * 2) {
+                            wait();
+                        }
+                        if(lost) {
+                            return;
+                        }
+                    }
+                    Batch batch = pending.pollFirst(1, TimeUnit.SECONDS);
+                    if(batch == null) {
+                        if(closed) {
+                            lose(null);
+                            return;
+                        }
+                        continue;
+                    }
+                    synchronized(this) {
+                        if(lost) {
+                            pending.addFirst(batch);
+                            return;
+                        }
+                        inFlight.put(batch.id, batch);
+                    }
+                    write(batch);
+                    out.flush();
+                }
+            } catch(IOException e) {
+                lose(e);
+            } catch(InterruptedException e) {
+                lose(null);
+            }
+        }
+
+        private void write(Batch batch) throws IOException {
+            Round round = batch.round;
+            out.writeByte(BATCH);
+            out.writeLong(batch.id);
+            out.writeInt(round.randomizer.ordinal());
+            out.writeInt(round.pieceBudget);
+            out.writeInt(round.scoreCap);
+            out.writeInt(batch.count);
+            for(int game = batch.first; game < batch.first + batch.count; game++) {
+                for(int gene = 0; gene < Population.GENE_COUNT; gene++) {
+                    out.writeDouble(round.weights[game * Population.GENE_COUNT + gene]);
+                }
+                out.writeLong(round.seeds[game]);
+            }
+        }
+
+        /**
+         * Reads results and capacity changes until the worker goes away.
+         */
+        private void receive() {
+            try {
+                while(true) {
+                    byte type;
+                    try {
+                        type = in.readByte();
+                    } catch(SocketTimeoutException e) {
+                        synchronized(this) {
+                            if(inFlight.isEmpty() && !closed) {
+                                continue;
+                            }
+                        }
+                        throw e;
+                    }
+                    if(type == CAPACITY) {
+                        int newCapacity = Math.max(1, in.readInt());
+                        synchronized(this) {
+                            capacity = newCapacity;
+                            notifyAll();
+                        }
+                        System.out.println("Worker " + name + " now has capacity " + newCapacity);
+                    } else if(type == RESULT) {
+                        readResult();
+                    } else if(type == HEARTBEAT) {
+                        //Still playing; having read something is all that counts.
+                        continue;
+                    } else {
+                        throw new IOException("unknown message " + type);
+                    }
+                }
+            } catch(IOException e) {
+                lose(e);
+            }
+        }
+
+        private void readResult() throws IOException {
+            long id = in.readLong();
+            int count = in.readInt();
+            GameResult[] results = new GameResult[count];
+            for(int i = 0; i < count; i++) {
+                int score = in.readInt();
+                int lines = in.readInt();
+                int pieces = in.readInt();
+                results[i] = new GameResult(score, lines, pieces, in.readBoolean());
+            }
+            Batch batch;
+            synchronized(this) {
+                batch = inFlight.remove(id);
+                notifyAll();
+            }
+            if(batch == null || count != batch.count) {
+                throw new IOException("answered a batch it wasn't sent");
+            }
+            Round round = batch.round;
+            System.arraycopy(results, 0, round.results, batch.first, count);
+            synchronized(round) {
+                if(--round.remaining == 0) {
+                    round.notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Gives up on the worker and puts its batches back at the front of
+         * the queue.
+         */
+        private void lose(IOException cause) {
+            List<Batch> orphans;
+            synchronized(this) {
+                if(lost) {
+                    return;
+                }
+                lost = true;
+                orphans = new ArrayList<Batch>(inFlight.values());
+                inFlight.clear();
+                notifyAll();
+            }
+            for(Batch batch : orphans) {
+                pending.addFirst(batch);
+            }
+            retries.addAndGet(orphans.size());
+            workers.decrementAndGet();
+            closeQuietly(socket);
+            if(!closed) {
+                String reason = cause == null || cause instanceof SocketException || cause instanceof EOFException
+                        ? "disconnected" : cause.getMessage();
+                System.out.println("Worker " + name + " lost (" + reason + "), " + orphans.size() + " batches sent again");
+            }
+        }
+    }
+
+}
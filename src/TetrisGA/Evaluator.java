@@ -0,0 +1,335 @@
+package TetrisGA;
+
+import java.util.Arrays;
+
+/**
+ * The {@code Evaluator} class is responsible for scoring a candidate board
+ * with the weights of a chromosome. Every game owns its own evaluator, so
+ * games with different chromosomes can run side by side.
+ *
+ */
+public class Evaluator {
+
+    /**
+     * The indexes of the features in the feature vector. They are in the same
+     * order as the weights in a chromosome.
+     */
+    public static final int HEIGHT = 0;
+    public static final int LINES = 1;
+    public static final int HOLES = 2;
+    public static final int BUMPINESS = 3;
+    public static final int BLOCKADES = 4;
+
+    /**
+     * The number of features.
+     */
+    public static final int FEATURE_COUNT = 5;
+
+    /**
+     * The feature vector filled by {@code extractFeatures}.
+     */
+    private final int[] features = new int[FEATURE_COUNT];
+
+    /**
+     * The number of filled tiles in each row, used to find full rows.
+     */
+    private final int[] rowFill = new int[Board.ROW_COUNT];
+
+    private double heightWeight;
+    private double linesWeight;
+    private double holesWeight;
+    private double bumbinesWeight;
+    private double blockadesWeight;
+
+    /**
+     * Creates a new evaluator with the weights of a chromosome.
+     * @param chromosome The chromosome to read the five weights from.
+     */
+    public Evaluator(double[] chromosome) {
+        setWeights(chromosome);
+    }
+
+    /**
+     * Sets the weights used by {@code calculatePoints}.
+     * @param chromosome The chromosome to read the five weights from.
+     */
+    public void setWeights(double[] chromosome) {
+        heightWeight = chromosome[0];
+        linesWeight = chromosome[1];
+        holesWeight = chromosome[2];
+        bumbinesWeight = chromosome[3];
+        blockadesWeight = chromosome[4];
+    }
+
+    /**
+     * Sets the weights used by {@code calculatePoints}.
+     * @param population The population to read the weights from.
+     * @param chromosome The index of the chromosome to read the five weights from.
+     */
+    public void setWeights(Population population, int chromosome) {
+        heightWeight = population.getGene(chromosome, HEIGHT);
+        linesWeight = population.getGene(chromosome, LINES);
+        holesWeight = population.getGene(chromosome, HOLES);
+        bumbinesWeight = population.getGene(chromosome, BUMPINESS);
+        blockadesWeight = population.getGene(chromosome, BLOCKADES);
+    }
+
+    /**
+     * Calculates all five features of a board in a single sweep over its
+     * columns. This gives the same values as the separate {@code calculate*}
+     * methods, which are kept as the reference.
+     * @param tab The board to measure, 0 for empty tiles.
+     * @return The feature vector, indexed by {@code HEIGHT}, {@code LINES}, ...
+     * It is reused by the next call.
+     */
+    public int[] extractFeatures(int tab[][]) {
+        int height = 0;
+        int holes = 0;
+        int bumpiness = 0;
+        int blockades = 0;
+        int previousTop = -1;
+
+        for(int j = 0; j < 22; j++) {
+            rowFill[j] = 0;
+        }
+
+        for(int i = 0; i < 10; i++) {
+            int top = 0;
+            int filled = 0;
+            int blockade = 0;
+            boolean wasFilled = false;
+            for(int j = 0; j < 22; j++) {
+                if(tab[j][i] != 0) {
+                    if(top == 0) {
+                        top = 22 - j;
+                    }
+                    if(j < 21) {
+                        height += 22 - j;
+                    }
+                    filled++;
+                    rowFill[j]++;
+                    wasFilled = true;
+                } else {
+                    if(top != 0) {
+                        holes++;
+                    }
+                    //Only the deepest hole counts, together with everything above it.
+                    if(wasFilled && j > 4) {
+                        blockade = filled;
+                    }
+                    wasFilled = false;
+                }
+            }
+            blockades += blockade;
+            if(previousTop >= 0) {
+                bumpiness += Math.abs(previousTop - top);
+            }
+            previousTop = top;
+        }
+
+        int lines = 0;
+        for(int j = 0; j < 22; j++) {
+            if(rowFill[j] == 10) {
+                lines++;
+            }
+        }
+
+        features[HEIGHT] = height;
+        features[LINES] = lines;
+        features[HOLES] = holes;
+        features[BUMPINESS] = bumpiness;
+        features[BLOCKADES] = blockades;
+        return features;
+    }
+
+    /**
+     * Calculates the features a board would have after dropping a piece onto
+     * it, without building the candidate board. The board keeps its column
+     * statistics up to date, so only the columns and rows the piece covers
+     * have to be looked at.
+     *
+     * The piece has to rest where it would land when dropped from the top,
+     * so every one of its tiles lies above the top tile of its column. This
+     * gives the same values as {@code extractFeatures} on the candidate board.
+     * @param board The board the piece is dropped onto.
+     * @param type The type of piece.
+     * @param x The column of the piece.
+     * @param y The row the piece lands on.
+     * @param rotation The rotation of the piece.
+     * @return The feature vector. It is reused by the next call.
+     */
+    public int[] extractFeatures(Board board, TileType type, int x, int y, int rotation) {
+        int bottomRow = Board.ROW_COUNT - 1;
+
+        //The bottom row doesn't count towards the height.
+        int height = board.getTileHeights() - Integer.bitCount(board.getRow(bottomRow));
+        int lines = 0;
+        int top = type.getTopInset(rotation);
+        int bottom = type.getDimension() - type.getBottomInset(rotation);
+        for(int row = top; row <= bottom; row++) {
+            int mask = type.getRowMask(rotation, row);
+            int boardRow = y + row;
+            if(boardRow < bottomRow) {
+                height += Integer.bitCount(mask) * (Board.ROW_COUNT - boardRow);
+            }
+            if((board.getRow(boardRow) | Board.shift(mask, x)) == Board.FULL_ROW) {
+                lines++;
+            }
+        }
+
+        int holes = board.getHoles();
+        int blockades = board.getCovered();
+        int bumpiness = board.getBumpiness();
+        int first = x + type.getLeftInset(rotation);
+        int last = x + type.getDimension() - type.getRightInset(rotation);
+        for(int col = first; col <= last; col++) {
+            int pieceTop = y + type.getTopProfile(rotation, col - x);
+            int pieceBottom = y + type.getBottomProfile(rotation, col - x);
+            int tiles = pieceBottom - pieceTop + 1;
+
+            //Everything between the piece and the old top of the column becomes a hole.
+            int gap = Board.ROW_COUNT - board.getColumnHeight(col) - 1 - pieceBottom;
+            holes += gap;
+
+            //The piece covers the deepest hole, or makes a new one right below itself.
+            if(board.getDeepestHole(col) >= 0 || (gap > 0 && pieceBottom + 1 > Board.TOP_OUT_ROW)) {
+                blockades += tiles;
+            }
+        }
+
+        //Only the neighbours of the covered columns can change the bumpiness.
+        int from = Math.max(first - 1, 0);
+        int to = Math.min(last, Board.COL_COUNT - 2);
+        for(int col = from; col <= to; col++) {
+            int left = board.getColumnHeight(col);
+            int right = board.getColumnHeight(col + 1);
+            bumpiness -= Math.abs(left - right);
+            if(col >= first) {
+                left = Board.ROW_COUNT - y - type.getTopProfile(rotation, col - x);
+            }
+            if(col + 1 <= last) {
+                right = Board.ROW_COUNT - y - type.getTopProfile(rotation, col + 1 - x);
+            }
+            bumpiness += Math.abs(left - right);
+        }
+
+        features[HEIGHT] = height;
+        features[LINES] = lines;
+        features[HOLES] = holes;
+        features[BUMPINESS] = bumpiness;
+        features[BLOCKADES] = blockades;
+        return features;
+    }
+
+    //na 100% dobrze
+    static int calculateHoles(int tab[][]) {
+        int holesCounter = 0;
+        for(int i = 0; i < 10; i++)
+            for(int j = 0; j < 21; j++) {
+                if(tab[j][i] != 0 && tab[j+1][i] == 0) {
+                    while(tab[j+1][i] == 0) {
+                        holesCounter++;
+                        j++;
+                        if (j == 21) {break;}
+                    }
+                }
+            }
+        return holesCounter;
+    }
+
+    //na 100% dobrze
+    static int calculateBlockades(int tab[][]) {
+        int blockade = 0;
+        for(int i = 0; i < 10; i++){
+            for(int j = 21; j >4 ; j--) {
+                if(tab[j][i] == 0 && tab[j-1][i] != 0){
+                    for(int k = j; k>=0; k--){
+                        if (tab[k][i] != 0){
+                            blockade++;
+                        }
+                        j--;
+                    }
+                }
+            }
+        }
+        return blockade;
+    }
+
+    static int calculateHeight(int tab[][]) {
+        int height = 0;
+            for(int i = 0; i < 10; i++){
+                for(int j = 0; j < 21; j++){
+                    if(tab[j][i] != 0) {
+                        height = height+ 22-j;
+                    }
+                }
+            }
+        return height;
+    }
+
+
+    static int calculateLines(int tab[][]) {
+        int clearedLines = 0;
+        for(int i = 21; i >= 0; i--) {
+            boolean isClear = true;
+            for(int j = 0; j <10; j++) {
+                if(tab[i][j]==0){
+                    isClear=false;
+                }
+            }
+            if (isClear){
+                clearedLines++;
+            }
+        }
+        return clearedLines;
+    }
+
+
+    static int calculateBumpines(int tab[][]) {
+        int[] heights = new int[10];
+        Arrays.fill(heights, 0);
+
+        for (int i = 0; i < 10; i++)
+            for (int j = 0; j < 22; j++) {
+                if (tab[j][i] != 0) {
+                    heights[i] = 22 - j;
+                    break;
+                }
+            }
+        int bumpiness = 0;
+        for (int i = 0; i < heights.length - 1; i++) {
+            bumpiness += Math.abs(heights[i] - heights[i + 1]);
+            //System.out.print(heights[i]+" ");
+        }
+        //System.out.println();
+        return bumpiness;
+    }
+
+    public double calculatePoints(int tab[][]){
+        return calculatePoints(extractFeatures(tab));
+    }
+
+    /**
+     * Scores the board a piece would leave when dropped onto {@code board}.
+     * @param board The board the piece is dropped onto.
+     * @param type The type of piece.
+     * @param x The column of the piece.
+     * @param y The row the piece lands on.
+     * @param rotation The rotation of the piece.
+     * @return The points of the candidate board.
+     */
+    public double calculatePoints(Board board, TileType type, int x, int y, int rotation){
+        return calculatePoints(extractFeatures(board, type, x, y, rotation));
+    }
+
+    private double calculatePoints(int[] features){
+        double calculatedHeight = features[HEIGHT]*heightWeight;
+        double calculatedLines = features[LINES]*linesWeight;
+        double calculatedHoles = features[HOLES]* holesWeight;
+        double calculatedBumbines = features[BUMPINESS]* bumbinesWeight;
+        double calculatedBlockades = features[BLOCKADES]*blockadesWeight;
+//
+        return calculatedHeight+calculatedLines+calculatedHoles+ calculatedBumbines+calculatedBlockades;
+    }
+
+}
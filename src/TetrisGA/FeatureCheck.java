@@ -0,0 +1,131 @@
+package TetrisGA;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The {@code FeatureCheck} class checks that the fast ways of measuring a
+ * board agree with the reference {@code calculate*} methods of
+ * {@link Evaluator}. It plays games with random weights, and before every
+ * piece tries every rotation in every column. The candidate board is
+ * measured three ways: by the {@code calculate*} methods, by the single
+ * sweep of {@code extractFeatures(int[][])}, and by the column statistics of
+ * {@code extractFeatures(Board, ...)}. Any difference is printed and makes
+ * the check exit with status 1. Placements that stick out of the top of the
+ * board lose the game before any feature is measured, so they are counted
+ * and reported, but not compared.
+ *
+ * Run it with {@code java TetrisGA.FeatureCheck [games] [seed]}. The build
+ * runs it in the {@code test} phase, so a mismatch fails {@code mvn package}.
+ *
+ */
+public class FeatureCheck {
+
+    /**
+     * The most mismatches printed before the check stops.
+     */
+    private static final int MAX_REPORTED = 10;
+
+    private static final String[] FEATURE_NAMES = {"height", "lines", "holes", "bumpiness", "blockades"};
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+        Random random = new Random(seed);
+        double[] weights = new double[Population.GENE_COUNT];
+        Evaluator reference = new Evaluator(weights);
+        Evaluator delta = new Evaluator(weights);
+        GameEngine engine = new GameEngine(new Evaluator(weights));
+        int[][] grid = new int[Board.ROW_COUNT + Board.HIDDEN_ROW_COUNT][Board.COL_COUNT];
+        int[] expected = new int[Evaluator.FEATURE_COUNT];
+        long candidates = 0;
+        long toppedOut = 0;
+        int mismatches = 0;
+
+        for(int game = 0; game < games && mismatches < MAX_REPORTED; game++) {
+            //Random weights play anything from clean stacks to hole-ridden towers.
+            for(int gene = 0; gene < weights.length; gene++) {
+                weights[gene] = -100 + 200 * random.nextDouble();
+            }
+            engine.getEvaluator().setWeights(weights);
+            engine.reset(new PieceSequence(Randomizer.UNIFORM, random.nextLong()));
+
+            do {
+                Board board = engine.getBoard();
+                TileType type = engine.getPieceType();
+                for(int rotation = 0; rotation < 4; rotation++) {
+                    for(int x = type.getMinColumn(rotation); x <= type.getMaxColumn(rotation); x++) {
+                        int y = board.getLandingRow(type, x, rotation);
+                        if(y + type.getTopInset(rotation) < 0) {
+                            //Sticks out of the top of the board, the game would be lost.
+                            toppedOut++;
+                            continue;
+                        }
+                        fillCandidate(grid, board, type, x, y, rotation);
+                        candidates++;
+
+                        expected[Evaluator.HEIGHT] = Evaluator.calculateHeight(grid);
+                        expected[Evaluator.LINES] = Evaluator.calculateLines(grid);
+                        expected[Evaluator.HOLES] = Evaluator.calculateHoles(grid);
+                        expected[Evaluator.BUMPINESS] = Evaluator.calculateBumpines(grid);
+                        expected[Evaluator.BLOCKADES] = Evaluator.calculateBlockades(grid);
+
+                        int[] swept = reference.extractFeatures(grid);
+                        if(!Arrays.equals(expected, swept)) {
+                            report("extractFeatures(int[][])", grid, expected, swept, type, x, y, rotation);
+                            mismatches++;
+                        }
+                        int[] incremental = delta.extractFeatures(board, type, x, y, rotation);
+                        if(!Arrays.equals(expected, incremental)) {
+                            report("extractFeatures(Board, ...)", grid, expected, incremental, type, x, y, rotation);
+                            mismatches++;
+                        }
+                        if(mismatches >= MAX_REPORTED) {
+                            break;
+                        }
+                    }
+                }
+            } while(mismatches < MAX_REPORTED && engine.step());
+        }
+
+        System.out.println(candidates + " candidates in " + games + " games, " + mismatches + " mismatches"
+                + (mismatches >= MAX_REPORTED ? " (stopped early)" : ""));
+        System.out.println(toppedOut + " placements stick out of the top of the board and lose the game, not compared");
+        if(mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Copies the board into a grid with a piece dropped onto it.
+     */
+    private static void fillCandidate(int[][] grid, Board board, TileType type, int x, int y, int rotation) {
+        board.copyTo(grid);
+        for(int col = 0; col < type.getDimension(); col++) {
+            for(int row = 0; row < type.getDimension(); row++) {
+                if(type.isTile(col, row, rotation)) {
+                    grid[y + row][x + col] = 1;
+                }
+            }
+        }
+    }
+
+    private static void report(String method, int[][] grid, int[] expected, int[] actual, TileType type, int x, int y,
+            int rotation) {
+        System.out.println(method + " disagrees for " + type + " at x=" + x + ", y=" + y + ", rotation " + rotation + ":");
+        for(int feature = 0; feature < Evaluator.FEATURE_COUNT; feature++) {
+            if(expected[feature] != actual[feature]) {
+                System.out.println("  " + FEATURE_NAMES[feature] + " " + actual[feature] + ", expected " + expected[feature]);
+            }
+        }
+        for(int row = 0; row < Board.ROW_COUNT; row++) {
+            StringBuilder line = new StringBuilder("  ");
+            for(int col = 0; col < Board.COL_COUNT; col++) {
+                line.append(grid[row][col] != 0 ? '#' : '.');
+            }
+            System.out.println(line);
+        }
+    }
+
+}
@@ -0,0 +1,264 @@
+package TetrisGA;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@code FitnessCache} class remembers the games already played by every
+ * weight vector, so a chromosome that reappears unchanged, as elites copied
+ * by crossover do, isn't evaluated again. The games of a weight vector are
+ * kept as running statistics, and new games are merged into them.
+ *
+ * Games are only reused on the same piece sequences. Every entry is keyed by
+ * the weights and an identity of the sequences they were played on, chosen
+ * by the evaluator: with common random numbers every generation plays new
+ * sequences, and a chromosome compared with the others on them has to play
+ * them too. Independent games can be merged whenever they were played.
+ *
+ * Only the least recently used {@code capacity} entries are kept. A cache
+ * belongs to a single evaluator, whose seeds, piece budget and score cap its
+ * games were played with.
+ *
+ */
+public class FitnessCache {
+
+    /**
+     * The games of every weight vector, least recently used first.
+     */
+    private final LinkedHashMap<Key, Entry> entries;
+
+    /**
+     * Creates a new, empty cache.
+     * @param capacity The most weight vectors to remember.
+     */
+    public FitnessCache(final int capacity) {
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, FitnessCache.Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the games played by a chromosome's weights on some sequences.
+     * @param population The population of the chromosome.
+     * @param chromosome The index of the chromosome.
+     * @param sequences The identity of the sequences.
+     * @return The games, or {@code null} if none are cached.
+     */
+    public Entry get(Population population, int chromosome, long sequences) {
+        return entries.get(new Key(population, chromosome, sequences));
+    }
+
+    /**
+     * Gets the games played by a chromosome's weights on some sequences,
+     * adding an empty entry if there is none.
+     * @param population The population of the chromosome.
+     * @param chromosome The index of the chromosome.
+     * @param sequences The identity of the sequences.
+     * @return The games.
+     */
+    public Entry getOrCreate(Population population, int chromosome, long sequences) {
+        Key key = new Key(population, chromosome, sequences);
+        Entry entry = entries.get(key);
+        if(entry == null) {
+            entry = new Entry();
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Gets the number of weight vectors cached.
+     * @return The number of entries.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Forgets every game, for when the games are played by different rules.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Writes every entry, least recently used first.
+     * @param out The stream to write to.
+     * @throws IOException If the stream can't be written.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(entries.size());
+        for(Map.Entry<Key, Entry> cached : entries.entrySet()) {
+            for(double weight : cached.getKey().weights) {
+                out.writeDouble(weight);
+            }
+            out.writeLong(cached.getKey().sequences);
+            Entry entry = cached.getValue();
+            out.writeInt(entry.games);
+            out.writeDouble(entry.mean);
+            out.writeDouble(entry.squares);
+            out.writeDouble(entry.linesPerPiece);
+            out.writeDouble(entry.scorePerPiece);
+            out.writeInt(entry.survived);
+        }
+    }
+
+    /**
+     * Replaces the entries with ones written by {@code write}, keeping their
+     * order of use.
+     * @param in The stream to read from.
+     * @param keyed Whether the entries were written with the identity of
+     * their sequences. Older entries don't say which sequences they were
+     * played on, so they are read and dropped.
+     * @throws IOException If the stream can't be read.
+     */
+    public void read(DataInputStream in, boolean keyed) throws IOException {
+        entries.clear();
+        int count = in.readInt();
+        for(int i = 0; i < count; i++) {
+            double[] weights = new double[Population.GENE_COUNT];
+            for(int gene = 0; gene < weights.length; gene++) {
+                weights[gene] = in.readDouble();
+            }
+            long sequences = keyed ? in.readLong() : 0;
+            Entry entry = new Entry();
+            entry.games = in.readInt();
+            entry.mean = in.readDouble();
+            entry.squares = in.readDouble();
+            entry.linesPerPiece = in.readDouble();
+            entry.scorePerPiece = in.readDouble();
+            entry.survived = in.readInt();
+            if(keyed) {
+                entries.put(new Key(weights, sequences), entry);
+            }
+        }
+    }
+
+    /**
+     * The weights of a chromosome and the identity of the sequences it
+     * played, compared by value.
+     */
+    static final class Key {
+
+        private final double[] weights;
+
+        private final long sequences;
+
+        private final int hash;
+
+        Key(Population population, int chromosome, long sequences) {
+            this(population.getWeights(chromosome, new double[Population.GENE_COUNT]), sequences);
+        }
+
+        Key(double[] weights, long sequences) {
+            this.weights = weights;
+            this.sequences = sequences;
+            this.hash = Arrays.hashCode(weights) * 31 + Long.hashCode(sequences);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && sequences == ((Key)other).sequences && Arrays.equals(weights, ((Key)other).weights);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * The running statistics of the games played by one weight vector.
+     */
+    public static final class Entry {
+
+        private int games;
+
+        private double mean;
+
+        /**
+         * The sum of squared differences from the mean, updated the way
+         * Welford does so it stays accurate over many games.
+         */
+        private double squares;
+
+        private double linesPerPiece;
+
+        private double scorePerPiece;
+
+        private int survived;
+
+        /**
+         * Merges a game into the statistics.
+         * @param result The game.
+         * @param fitness The fitness of the game.
+         */
+        public void add(GameResult result, double fitness) {
+            games++;
+            double difference = fitness - mean;
+            mean += difference / games;
+            squares += difference * (fitness - mean);
+            linesPerPiece += (result.getLinesPerPiece() - linesPerPiece) / games;
+            scorePerPiece += (result.getScorePerPiece() - scorePerPiece) / games;
+            if(result.isSurvived()) {
+                survived++;
+            }
+        }
+
+        /**
+         * Gets the number of games played.
+         * @return The number of games.
+         */
+        public int getGames() {
+            return games;
+        }
+
+        /**
+         * Gets the mean fitness of the games.
+         * @return The fitness.
+         */
+        public double getFitness() {
+            return mean;
+        }
+
+        /**
+         * Gets the sample variance of the fitness of the games.
+         * @return The variance, or 0 for fewer than two games.
+         */
+        public double getVariance() {
+            return games < 2 ? 0 : squares / (games - 1);
+        }
+
+        /**
+         * Gets the mean lines per piece of the games.
+         * @return The lines per piece.
+         */
+        public double getLinesPerPiece() {
+            return linesPerPiece;
+        }
+
+        /**
+         * Gets the mean score per piece of the games.
+         * @return The score per piece.
+         */
+        public double getScorePerPiece() {
+            return scorePerPiece;
+        }
+
+        /**
+         * Gets the share of the games that survived until a limit stopped them.
+         * @return The survival rate, between 0 and 1.
+         */
+        public double getSurvivalRate() {
+            return games == 0 ? 0 : survived / (double)games;
+        }
+    }
+
+}
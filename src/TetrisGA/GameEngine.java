@@ -0,0 +1,536 @@
+package TetrisGA;
+
+import java.util.Random;
+
+/**
+ * The {@code GameEngine} class is responsible for the game logic: spawning,
+ * placing and dropping pieces, clearing lines and keeping the score. It has
+ * no dependency on AWT or Swing, so games can be played one piece at a time
+ * without a display (see {@link #step()}), while {@link Tetris} only shows
+ * the state of an engine.
+ *
+ */
+public class GameEngine {
+
+    /**
+     * The types of piece. {@code TileType.values()} copies the array on
+     * every call, so it is only read once.
+     */
+    private static final TileType[] TYPES = TileType.values();
+
+    /**
+     * The number of pieces that exist.
+     */
+    private static final int TYPE_COUNT = TYPES.length;
+
+    private int bestRotation;
+    private int bestXpos;
+    private double bestPoints;
+
+    boolean testMode = false;
+
+    /**
+     * The board the game is played on.
+     */
+    private Board board;
+
+    /**
+     * The evaluator that scores candidate placements.
+     */
+    private Evaluator evaluator;
+
+    /**
+     * Occupancy grid the candidate placements are printed on in test mode.
+     * Only created once test mode prints something.
+     */
+    private int[][] tablica;
+
+    /**
+     * Whether or not the game is over.
+     */
+    private boolean isGameOver;
+
+    /**
+     * The current score.
+     */
+    private int score;
+
+    /**
+     * The number of lines cleared in this game.
+     */
+    private int lines;
+
+    /**
+     * The number of pieces placed in this game.
+     */
+    private int pieces;
+
+    /**
+     * The random number generator. This is used to
+     * spit out pieces randomly.
+     */
+    private Random random;
+
+    /**
+     * The sequence the pieces are taken from, or {@code null} to draw them
+     * with {@code random}.
+     */
+    private PieceSequence sequence;
+
+    /**
+     * The index of the next piece in {@code sequence}.
+     */
+    private int sequenceIndex;
+
+    /**
+     * The current type of tile.
+     */
+    private TileType currentType;
+
+    /**
+     * The next type of tile.
+     */
+    private TileType nextType;
+
+    /**
+     * The current column of our tile.
+     */
+    private int currentCol;
+
+    /**
+     * The current row of our tile.
+     */
+    private int currentRow;
+
+    /**
+     * The current rotation of our tile.
+     */
+    private int currentRotation;
+
+    /**
+     * Creates a new engine with an empty board that doesn't keep colours.
+     * @param evaluator The evaluator to score candidate placements with.
+     */
+    public GameEngine(Evaluator evaluator) {
+        this(evaluator, false);
+    }
+
+    /**
+     * Creates a new engine with an empty board.
+     * @param evaluator The evaluator to score candidate placements with.
+     * @param hasColors Whether the board should remember piece types for drawing.
+     */
+    public GameEngine(Evaluator evaluator, boolean hasColors) {
+        this.evaluator = evaluator;
+        this.board = new Board(hasColors);
+        this.random = new Random();
+    }
+
+    /**
+     * Resets the game variables to their default values at the start
+     * of a new game with random pieces and spawns the first piece.
+     */
+    public void reset() {
+        reset(null);
+    }
+
+    /**
+     * Resets the game variables to their default values at the start
+     * of a new game and spawns the first piece.
+     * @param sequence The sequence to take the pieces from, or {@code null}
+     * for random pieces.
+     */
+    public void reset(PieceSequence sequence) {
+        this.sequence = sequence;
+        this.sequenceIndex = 0;
+        this.nextType = nextPiece();
+        this.isGameOver = false;
+        this.score = 0;
+        this.lines = 0;
+        this.pieces = 0;
+        board.clear();
+        spawnPiece();
+    }
+
+    /**
+     * Plays a single piece: picks the best placement for the current piece,
+     * drops it, clears lines and spawns the next piece.
+     * @return Whether or not the game is still running.
+     */
+    public boolean step() {
+        if(isGameOver) {
+            return false;
+        }
+        bruteForce();
+        hardDrop();
+        lockPiece();
+        return !isGameOver;
+    }
+
+    /**
+     * Plays a game with random pieces from a fresh board until it's lost.
+     * @return The final score.
+     */
+    public int playGame() {
+        return playGame(null);
+    }
+
+    /**
+     * Plays a game from a fresh board until it's lost.
+     * @param sequence The sequence to take the pieces from, or {@code null}
+     * for random pieces.
+     * @return The final score.
+     */
+    public int playGame(PieceSequence sequence) {
+        return playGame(sequence, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Plays a game from a fresh board until it's lost, it has placed
+     * {@code pieceBudget} pieces or its score reaches {@code scoreCap},
+     * whichever comes first. The game is only over if it was lost.
+     * @param sequence The sequence to take the pieces from, or {@code null}
+     * for random pieces.
+     * @param pieceBudget The most pieces to place.
+     * @param scoreCap The score to stop at.
+     * @return The final score.
+     */
+    public int playGame(PieceSequence sequence, int pieceBudget, int scoreCap) {
+        reset(sequence);
+        while(pieces < pieceBudget && score < scoreCap && step()) {
+        }
+        return score;
+    }
+
+    /**
+     * Spawns a new piece and resets our piece's variables to their default
+     * values. If the board has been stacked up into the spawn area the game
+     * is flagged as over instead.
+     */
+    public void spawnPiece() {
+		/*
+		 * Poll the last piece and reset our position and rotation to
+		 * their default variables, then pick the next piece to use.
+		 */
+        this.currentType = nextType;
+        this.currentCol = currentType.getSpawnColumn();
+        this.currentRow = currentType.getSpawnRow();
+        this.currentRotation = 0;
+        this.nextType = nextPiece();
+
+		/*
+		 * If the spawn point is invalid, we need to flag that we've lost
+		 * because it means that the pieces on the board have gotten too high.
+		 */
+        if(board.isToppedOut() || !board.isValidAndEmpty(currentType, currentCol, currentRow, currentRotation)) {
+            this.isGameOver = true;
+        }
+    }
+
+    /**
+     * Replaces the current piece and moves it to its spawn position.
+     * @param type The new type of piece.
+     */
+    public void setPieceType(TileType type) {
+        this.currentType = type;
+        this.currentCol = type.getSpawnColumn();
+        this.currentRow = type.getSpawnRow();
+        this.currentRotation = 0;
+    }
+
+    /**
+     * Picks the type of the next piece.
+     * @return The piece type.
+     */
+    private TileType nextPiece() {
+        if(sequence != null) {
+            return sequence.get(sequenceIndex++);
+        }
+        return TYPES[random.nextInt(TYPE_COUNT)];
+    }
+
+    /**
+     * Adds the current piece to the board where it is, clears any completed
+     * lines and spawns the next piece.
+     */
+    public void lockPiece() {
+        board.addPiece(currentType, currentCol, currentRow, currentRotation);
+        pieces++;
+
+		/*
+		 * Check to see if adding the new piece resulted in any cleared lines. If so,
+		 * increase the player's score. (Up to 4 lines can be cleared in a single go;
+		 * [1 = 100pts, 2 = 200pts, 3 = 400pts, 4 = 800pts]).
+		 */
+        int cleared = board.checkLines();
+        if(cleared > 0) {
+            score += 50 << cleared;
+            lines += cleared;
+        }
+        spawnPiece();
+    }
+
+    /**
+     * Drops the current piece as far down as it will go.
+     */
+    public void hardDrop() {
+        currentRow = board.getDropRow(currentType, currentCol, currentRow, currentRotation);
+    }
+
+    /**
+     * Moves the current piece down one row if it's safe to do so.
+     * @return Whether or not the piece moved.
+     */
+    public boolean moveDown() {
+        if(board.isValidAndEmpty(currentType, currentCol, currentRow + 1, currentRotation)) {
+            currentRow++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Moves the current piece one column to the left if it's safe to do so.
+     * @return Whether or not the piece moved.
+     */
+    public boolean moveLeft() {
+        if(board.isValidAndEmpty(currentType, currentCol - 1, currentRow, currentRotation)) {
+            currentCol--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Moves the current piece one column to the right if it's safe to do so.
+     * @return Whether or not the piece moved.
+     */
+    public boolean moveRight() {
+        if(board.isValidAndEmpty(currentType, currentCol + 1, currentRow, currentRotation)) {
+            currentCol++;
+            return true;
+        }
+        return false;
+    }
+
+/////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Attempts to move piece to every possible column with every distinct rotation.
+     * Nothing is allocated here, so the search can run for hours without
+     * feeding the garbage collector; the debug output of {@code testMode}
+     * is kept out of the loop in {@code printCandidate}.
+     */
+public void bruteForce() {
+
+    bestPoints=-999999999;
+    bestRotation=0;
+    bestXpos=0;
+
+    for (int Rotacje = 0; Rotacje < currentType.getRotationCount(); Rotacje++) {
+        int rotation = currentType.getDistinctRotation(Rotacje);
+        int maxColumn = currentType.getMaxColumn(rotation);
+        for (int col = currentType.getMinColumn(rotation); col <= maxColumn; col++) {
+            int ghostRow = board.getLandingRow(currentType, col, rotation);
+            double points = evaluator.calculatePoints(board, currentType, col, ghostRow, rotation);
+            if(testMode == true) {
+                printCandidate(col, ghostRow, rotation, points);
+            }
+
+            if(points>bestPoints){
+                bestPoints=points;
+                bestXpos=col;
+                bestRotation=rotation;
+            }
+        }
+    }
+    currentCol=bestXpos;
+    currentRotation=bestRotation;
+    if(testMode == true) {
+        System.out.println("finished, best x="+ bestXpos + "best rota=" + bestRotation);
+    }
+}
+
+    /**
+     * Prints a candidate placement and the board it would leave (test mode only).
+     * @param x The column of the piece.
+     * @param ghostRow The row the piece lands on.
+     * @param rotation The rotation of the piece.
+     * @param points The points of the candidate.
+     */
+    private void printCandidate(int x, int ghostRow, int rotation, double points) {
+        System.out.println("==================================================" );
+        System.out.println("moved right" + x + " rota " + rotation);
+        System.out.println("ROW  " + ghostRow);
+
+        if(tablica == null) {
+            tablica = new int[Board.ROW_COUNT + Board.HIDDEN_ROW_COUNT][Board.COL_COUNT];
+        }
+
+        //dodanie do tablicy normalnych klockow
+        board.copyTo(tablica);
+        for(int col = 0; col < currentType.getDimension(); col++) {
+            for(int row = 0; row < currentType.getDimension(); row++) {
+                if( currentType.isTile(col, row, rotation)) {
+// dopisanie do tablicy ghost klockow
+                    //                 row / col
+                    tablica[ghostRow + row][x+col] = 2;
+                }
+            }
+        }
+
+        for (int y = Board.HIDDEN_ROW_COUNT; y < Board.ROW_COUNT; y++) {
+            for (int col = 0; col < Board.COL_COUNT; col++) {
+                System.out.print(tablica[y][col] + " ");
+            }
+            System.out.println();
+        }
+
+        System.out.println("punkty dla tego ruchu : "+ points );
+        System.out.println("old points "+bestPoints);
+    }
+
+////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Attempts to set the rotation of the current piece to newRotation.
+     * @param newRotation The rotation of the new peice.
+     */
+    public void rotatePiece(int newRotation) {
+		/*
+		 * Sometimes pieces will need to be moved when rotated to avoid clipping
+		 * out of the board (the I piece is a good example of this). Here we store
+		 * a temporary row and column in case we need to move the tile as well.
+		 */
+        int newColumn = currentCol;
+        int newRow = currentRow;
+
+		/*
+		 * Get the insets for each of the sides. These are used to determine how
+		 * many empty rows or columns there are on a given side.
+		 */
+        int left = currentType.getLeftInset(newRotation);
+        int right = currentType.getRightInset(newRotation);
+        int top = currentType.getTopInset(newRotation);
+        int bottom = currentType.getBottomInset(newRotation);
+
+		/*
+		 * If the current piece is too far to the left or right, move the piece away from the edges
+		 * so that the piece doesn't clip out of the map and automatically become invalid.
+		 */
+        if(currentCol < -left) {
+            newColumn -= currentCol - left;
+        } else if(currentCol + currentType.getDimension() - right >= Board.COL_COUNT) {
+            newColumn -= (currentCol + currentType.getDimension() - right) - Board.COL_COUNT + 1;
+        }
+
+		/*
+		 * If the current piece is too far to the top or bottom, move the piece away from the edges
+		 * so that the piece doesn't clip out of the map and automatically become invalid.
+		 */
+        if(currentRow < -top) {
+            newRow -= currentRow - top;
+        } else if(currentRow + currentType.getDimension() - bottom >= Board.ROW_COUNT) {
+            newRow -= (currentRow + currentType.getDimension() - bottom) - Board.ROW_COUNT + 1;
+        }
+
+		/*
+		 * Check to see if the new position is acceptable. If it is, update the rotation and
+		 * position of the piece.
+		 */
+        if(board.isValidAndEmpty(currentType, newColumn, newRow, newRotation)) {
+            currentRotation = newRotation;
+            currentRow = newRow;
+            currentCol = newColumn;
+        }
+    }
+
+    /**
+     * Gets the board the game is played on.
+     * @return The board.
+     */
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * Gets the evaluator that scores candidate placements.
+     * @return The evaluator.
+     */
+    public Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+    /**
+     * Checks to see whether or not the game is over.
+     * @return Whether or not the game is over.
+     */
+    public boolean isGameOver() {
+        return isGameOver;
+    }
+
+    /**
+     * Gets the current score.
+     * @return The score.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Gets the number of lines cleared in this game.
+     * @return The number of lines.
+     */
+    public int getLines() {
+        return lines;
+    }
+
+    /**
+     * Gets the number of pieces placed in this game.
+     * @return The number of pieces.
+     */
+    public int getPieces() {
+        return pieces;
+    }
+
+    /**
+     * Gets the current type of piece we're using.
+     * @return The piece type.
+     */
+    public TileType getPieceType() {
+        return currentType;
+    }
+
+    /**
+     * Gets the next type of piece we're using.
+     * @return The next piece.
+     */
+    public TileType getNextPieceType() {
+        return nextType;
+    }
+
+    /**
+     * Gets the column of the current piece.
+     * @return The column.
+     */
+    public int getPieceCol() {
+        return currentCol;
+    }
+
+    /**
+     * Gets the row of the current piece.
+     * @return The row.
+     */
+    public int getPieceRow() {
+        return currentRow;
+    }
+
+    /**
+     * Gets the rotation of the current piece.
+     * @return The rotation.
+     */
+    public int getPieceRotation() {
+        return currentRotation;
+    }
+
+}
@@ -0,0 +1,109 @@
+package TetrisGA;
+
+/**
+ * The {@code GameResult} class holds the outcome of a single fitness game.
+ * Games end when they are lost, or earlier when they use up their piece
+ * budget or reach the score cap; such games have survived.
+ *
+ */
+public final class GameResult {
+
+    /**
+     * The final score.
+     */
+    private final int score;
+
+    /**
+     * The number of lines cleared.
+     */
+    private final int lines;
+
+    /**
+     * The number of pieces placed.
+     */
+    private final int pieces;
+
+    /**
+     * Whether the game was stopped by a limit rather than lost.
+     */
+    private final boolean survived;
+
+    /**
+     * Creates a new result.
+     * @param score The final score.
+     * @param lines The number of lines cleared.
+     * @param pieces The number of pieces placed.
+     * @param survived Whether the game was stopped by a limit rather than lost.
+     */
+    public GameResult(int score, int lines, int pieces, boolean survived) {
+        this.score = score;
+        this.lines = lines;
+        this.pieces = pieces;
+        this.survived = survived;
+    }
+
+    /**
+     * Gets the fitness of the game. A lost game is worth its score. A game
+     * that survived is worth the score it would reach over the whole piece
+     * budget at the rate it was scoring, so a game stopped early by the score
+     * cap still ranks above a slower one that used up the budget.
+     * @param pieceBudget The piece budget of the game, or
+     * {@code Integer.MAX_VALUE} if it only had a score cap.
+     * @return The fitness.
+     */
+    public double getFitness(int pieceBudget) {
+        if(!survived || pieces == 0 || pieceBudget == Integer.MAX_VALUE) {
+            return score;
+        }
+        return getScorePerPiece() * pieceBudget;
+    }
+
+    /**
+     * Gets the final score.
+     * @return The score.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Gets the number of lines cleared.
+     * @return The number of lines.
+     */
+    public int getLines() {
+        return lines;
+    }
+
+    /**
+     * Gets the number of pieces placed.
+     * @return The number of pieces.
+     */
+    public int getPieces() {
+        return pieces;
+    }
+
+    /**
+     * Checks whether the game was stopped by a limit rather than lost.
+     * @return Whether the game survived.
+     */
+    public boolean isSurvived() {
+        return survived;
+    }
+
+    /**
+     * Gets the number of lines cleared per piece placed.
+     * @return The lines per piece.
+     */
+    public double getLinesPerPiece() {
+        return pieces == 0 ? 0 : lines / (double)pieces;
+    }
+
+    /**
+     * Gets the score per piece placed.
+     * @return The score per piece.
+     */
+    public double getScorePerPiece() {
+        return pieces == 0 ? 0 : score / (double)pieces;
+    }
+
+}
@@ -0,0 +1,445 @@
+package TetrisGA;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code HistoryStore} class keeps every chromosome a run evaluated in an
+ * append-only file of fixed-size records, so analysis tools and later runs
+ * can look through millions of past evaluations without playing a game.
+ * Every record holds the weights, the fitness, its variance, the number of
+ * games, the generation and the records of both parents.
+ *
+ * The file is memory-mapped in segments of {@code SEGMENT_RECORDS} records,
+ * so a record is read or written straight from the page cache, and record
+ * {@code id} is found by arithmetic alone. A small index file next to it,
+ * with the extension {@code .idx}, lists where every generation starts.
+ *
+ * The number of complete records is kept in the header, and only moves on
+ * after the records themselves are on disk. After a crash the store reopens
+ * at the last {@code flush}, and anything written after it is overwritten.
+ *
+ * A store opened read-only maps the file read-only and leaves it and its
+ * index exactly as they are, so another run's history can be read, even
+ * while that run is still writing it.
+ *
+ */
+public final class HistoryStore {
+
+    /**
+     * The first four bytes of a history file, "TGAH".
+     */
+    public static final int MAGIC = 0x54474148;
+
+    /**
+     * The version of the format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The size of the header: magic, version, record size and record count.
+     */
+    private static final int HEADER = 4 + 4 + 4 + 8;
+
+    /**
+     * The size of a record: the weights, fitness, variance, games, generation
+     * and the two parents.
+     */
+    public static final int RECORD_SIZE = Population.GENE_COUNT * 8 + 8 + 8 + 4 + 4 + 8 + 8;
+
+    private static final int FITNESS = Population.GENE_COUNT * 8;
+
+    private static final int VARIANCE = FITNESS + 8;
+
+    private static final int GAMES = VARIANCE + 8;
+
+    private static final int GENERATION = GAMES + 4;
+
+    private static final int PARENT_A = GENERATION + 4;
+
+    private static final int PARENT_B = PARENT_A + 8;
+
+    /**
+     * The number of records mapped at a time.
+     */
+    public static final int SEGMENT_RECORDS = 1 << 16;
+
+    private final RandomAccessFile file;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer header;
+
+    /**
+     * The segments mapped so far, in order.
+     */
+    private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+
+    /**
+     * The index file being appended to, or {@code null} if the store is
+     * read-only.
+     */
+    private final DataOutputStream indexOut;
+
+    /**
+     * The first record and the end of the records of every generation. A
+     * generation written again, after a resume, points to its latest records.
+     */
+    private final Map<Integer, long[]> index = new HashMap<Integer, long[]>();
+
+    /**
+     * The generation of the last record.
+     */
+    private int lastGeneration = Integer.MIN_VALUE;
+
+    /**
+     * The number of records.
+     */
+    private long size;
+
+    /**
+     * Opens a history file for appending, creating it if it doesn't exist.
+     * @param path The path of the file.
+     * @throws IOException If the file can't be opened or isn't a history file.
+     */
+    public HistoryStore(String path) throws IOException {
+        this(path, false);
+    }
+
+    /**
+     * Opens a history file.
+     * @param path The path of the file.
+     * @param readOnly Whether to only read the file, which must then exist,
+     * without changing it or its index.
+     * @throws IOException If the file can't be opened or isn't a history file.
+     */
+    public HistoryStore(String path, boolean readOnly) throws IOException {
+        File indexFile = new File(path + ".idx");
+        file = new RandomAccessFile(path, readOnly ? "r" : "rw");
+        channel = file.getChannel();
+        boolean created = channel.size() == 0;
+        if(readOnly && channel.size() < HEADER) {
+            file.close();
+            throw new IOException(path + " is not a history file");
+        }
+        header = channel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, 0, HEADER);
+        if(created) {
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putInt(8, RECORD_SIZE);
+            header.putLong(12, 0);
+            header.force();
+        } else if(header.getInt(0) != MAGIC) {
+            close();
+            throw new IOException(path + " is not a history file");
+        } else if(header.getInt(4) != VERSION || header.getInt(8) != RECORD_SIZE) {
+            close();
+            throw new IOException(path + " has history version " + header.getInt(4) + ", expected " + VERSION);
+        }
+        size = header.getLong(12);
+
+        //Rebuild the index, leaving out generations that started after the last flush.
+        List<long[]> starts = new ArrayList<long[]>();
+        if(!created && indexFile.exists()) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+            try {
+                while(true) {
+                    int generation = in.readInt();
+                    long first = in.readLong();
+                    if(first >= size) {
+                        break;
+                    }
+                    starts.add(new long[] {generation, first});
+                }
+            } catch(EOFException e) {
+                //The end of the index.
+            } finally {
+                in.close();
+            }
+        }
+        for(int i = 0; i < starts.size(); i++) {
+            long end = i + 1 < starts.size() ? starts.get(i + 1)[1] : size;
+            index.put((int)starts.get(i)[0], new long[] {starts.get(i)[1], end});
+        }
+        if(!starts.isEmpty()) {
+            lastGeneration = (int)starts.get(starts.size() - 1)[0];
+        }
+
+        if(readOnly) {
+            indexOut = null;
+            return;
+        }
+
+        //Write the index again without the entries that were cut off.
+        indexOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+        for(long[] start : starts) {
+            indexOut.writeInt((int)start[0]);
+            indexOut.writeLong(start[1]);
+        }
+        indexOut.flush();
+    }
+
+    /**
+     * Appends an evaluated chromosome.
+     * @param population The population of the chromosome.
+     * @param chromosome The index of the chromosome.
+     * @param generation The generation it was evaluated in.
+     * @param parentA The record of its first parent, or -1.
+     * @param parentB The record of its second parent, or -1.
+     * @return The record of the chromosome.
+     * @throws IOException If the file can't grow.
+     * @throws IllegalStateException If the store is read-only.
+     */
+    public long append(Population population, int chromosome, int generation, long parentA, long parentB) throws IOException {
+        checkWritable();
+        long id = size;
+        if(generation != lastGeneration) {
+            index.put(generation, new long[] {id, id});
+            indexOut.writeInt(generation);
+            indexOut.writeLong(id);
+            lastGeneration = generation;
+        }
+
+        MappedByteBuffer segment = getSegment(id);
+        int offset = getOffset(id);
+        for(int gene = 0; gene < Population.GENE_COUNT; gene++) {
+            segment.putDouble(offset + gene * 8, population.getGene(chromosome, gene));
+        }
+        segment.putDouble(offset + FITNESS, population.getFitness(chromosome));
+        segment.putDouble(offset + VARIANCE, population.getVariance(chromosome));
+        segment.putInt(offset + GAMES, population.getGames(chromosome));
+        segment.putInt(offset + GENERATION, generation);
+        segment.putLong(offset + PARENT_A, parentA);
+        segment.putLong(offset + PARENT_B, parentB);
+        size++;
+        index.get(generation)[1] = size;
+        return id;
+    }
+
+    /**
+     * Makes the records appended so far survive a crash: writes them to
+     * disk, and only then counts them in the header.
+     * @throws IOException If the index can't be written.
+     * @throws IllegalStateException If the store is read-only.
+     */
+    public void flush() throws IOException {
+        checkWritable();
+        for(MappedByteBuffer segment : segments) {
+            if(segment != null) {
+                segment.force();
+            }
+        }
+        indexOut.flush();
+        header.putLong(12, size);
+        header.force();
+        //Only the last segment can still change.
+        for(int i = 0; i < segments.size() - 1; i++) {
+            segments.set(i, null);
+        }
+    }
+
+    /**
+     * Flushes the store, trims the file to its records and closes it. A
+     * read-only store is only closed.
+     * @throws IOException If the file can't be written.
+     */
+    public void close() throws IOException {
+        try {
+            if(indexOut != null) {
+                flush();
+                indexOut.close();
+                channel.truncate(HEADER + size * RECORD_SIZE);
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Gets the number of records.
+     * @return The number of records.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Gets the generation of the last record, which in a finished run is
+     * its final population.
+     * @return The generation, or {@code Integer.MIN_VALUE} if the store is empty.
+     */
+    public int getLastGeneration() {
+        return lastGeneration;
+    }
+
+    /**
+     * Gets the first record of a generation.
+     * @param generation The generation.
+     * @return The record, or -1 if the generation isn't in the store.
+     */
+    public long getFirst(int generation) {
+        long[] range = index.get(generation);
+        return range == null ? -1 : range[0];
+    }
+
+    /**
+     * Gets the number of records of a generation, which follow its first one.
+     * @param generation The generation.
+     * @return The number of records, 0 if the generation isn't in the store.
+     */
+    public long getCount(int generation) {
+        long[] range = index.get(generation);
+        return range == null ? 0 : range[1] - range[0];
+    }
+
+    /**
+     * Gets the weights of a record.
+     * @param id The record.
+     * @param weights The array to copy them to, at least {@code Population.GENE_COUNT} long.
+     * @return The array.
+     * @throws IOException If the record can't be mapped.
+     */
+    public double[] getWeights(long id, double[] weights) throws IOException {
+        MappedByteBuffer segment = getSegment(checkId(id));
+        int offset = getOffset(id);
+        for(int gene = 0; gene < Population.GENE_COUNT; gene++) {
+            weights[gene] = segment.getDouble(offset + gene * 8);
+        }
+        return weights;
+    }
+
+    /**
+     * Copies a record into a population, with its fitness, its variance and
+     * the record it came from.
+     * @param id The record.
+     * @param population The population to copy it to.
+     * @param chromosome The index to copy it to.
+     * @throws IOException If the record can't be mapped.
+     */
+    public void copyTo(long id, Population population, int chromosome) throws IOException {
+        MappedByteBuffer segment = getSegment(checkId(id));
+        int offset = getOffset(id);
+        for(int gene = 0; gene < Population.GENE_COUNT; gene++) {
+            population.setGene(chromosome, gene, segment.getDouble(offset + gene * 8));
+        }
+        population.setEvaluation(chromosome, segment.getDouble(offset + FITNESS), segment.getInt(offset + GAMES),
+                segment.getDouble(offset + VARIANCE));
+        population.setId(chromosome, id);
+    }
+
+    /**
+     * Gets the fitness of a record.
+     * @param id The record.
+     * @return The average fitness.
+     * @throws IOException If the record can't be mapped.
+     */
+    public double getFitness(long id) throws IOException {
+        return getSegment(checkId(id)).getDouble(getOffset(id) + FITNESS);
+    }
+
+    /**
+     * Gets the variance of the fitness of a record's games.
+     * @param id The record.
+     * @return The variance.
+     * @throws IOException If the record can't be mapped.
+     */
+    public double getVariance(long id) throws IOException {
+        return getSegment(checkId(id)).getDouble(getOffset(id) + VARIANCE);
+    }
+
+    /**
+     * Gets the number of games the fitness of a record is averaged over.
+     * @param id The record.
+     * @return The number of games.
+     * @throws IOException If the record can't be mapped.
+     */
+    public int getGames(long id) throws IOException {
+        return getSegment(checkId(id)).getInt(getOffset(id) + GAMES);
+    }
+
+    /**
+     * Gets the generation a record was evaluated in.
+     * @param id The record.
+     * @return The generation.
+     * @throws IOException If the record can't be mapped.
+     */
+    public int getGeneration(long id) throws IOException {
+        return getSegment(checkId(id)).getInt(getOffset(id) + GENERATION);
+    }
+
+    /**
+     * Gets the first parent of a record.
+     * @param id The record.
+     * @return The record of the parent, or -1 if it has none.
+     * @throws IOException If the record can't be mapped.
+     */
+    public long getParentA(long id) throws IOException {
+        return getSegment(checkId(id)).getLong(getOffset(id) + PARENT_A);
+    }
+
+    /**
+     * Gets the second parent of a record.
+     * @param id The record.
+     * @return The record of the parent, or -1 if it has none.
+     * @throws IOException If the record can't be mapped.
+     */
+    public long getParentB(long id) throws IOException {
+        return getSegment(checkId(id)).getLong(getOffset(id) + PARENT_B);
+    }
+
+    private void checkWritable() {
+        if(indexOut == null) {
+            throw new IllegalStateException("The history is open read-only");
+        }
+    }
+
+    private long checkId(long id) {
+        if(id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No record " + id + " in a history of " + size);
+        }
+        return id;
+    }
+
+    private static int getOffset(long id) {
+        return (int)(id % SEGMENT_RECORDS) * RECORD_SIZE;
+    }
+
+    /**
+     * Gets the mapped segment holding a record, mapping it, and growing the
+     * file, the first time it's needed. A read-only store maps no further
+     * than the end of the file.
+     */
+    private MappedByteBuffer getSegment(long id) throws IOException {
+        int number = (int)(id / SEGMENT_RECORDS);
+        while(segments.size() <= number) {
+            segments.add(null);
+        }
+        MappedByteBuffer segment = segments.get(number);
+        if(segment == null) {
+            long start = HEADER + (long)number * SEGMENT_RECORDS * RECORD_SIZE;
+            long length = (long)SEGMENT_RECORDS * RECORD_SIZE;
+            if(indexOut == null) {
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(length, channel.size() - start));
+            } else {
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, start, length);
+            }
+            segments.set(number, segment);
+        }
+        return segment;
+    }
+
+}
@@ -0,0 +1,106 @@
+package TetrisGA;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The {@code Islands} class runs an island model on one machine: it starts
+ * {@code islands} copies of {@link geneticOperations}, each in its own JVM
+ * with its own share of the cores, which exchange their best chromosomes
+ * through {@code migrationDir}. Every island writes its output to
+ * {@code island-<island>.log} in that directory. Once all of them are done,
+ * the best chromosome of every island and the combined throughput are
+ * printed.
+ *
+ * It takes the same flags as {@code geneticOperations}, for example
+ * {@code java TetrisGA.Islands --islands=4 --topology=FULL --migrationEvery=3}.
+ * Islands on other machines can join by running {@code geneticOperations}
+ * with the same flags, their own {@code --island}, and a shared directory.
+ *
+ * The batches of an earlier run in {@code migrationDir} are deleted before
+ * the first island starts, so no island mistakes an old
+ * {@code island-<island>-final.bin} for a neighbour that has already stopped.
+ * Islands started by hand only clear their own batches, so they need an
+ * empty directory, or one this class has cleared.
+ *
+ */
+public class Islands {
+
+    /**
+     * Starts the islands and waits for them.
+     * @param args The flags, see {@link Config}.
+     * @throws IOException If the properties file can't be read or an island can't be started.
+     * @throws InterruptedException If interrupted while waiting for the islands.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Config config = Config.parse(args);
+        int islands = config.getInt("islands", 1);
+        int threads = config.getInt("threads", Math.max(1, Runtime.getRuntime().availableProcessors() / islands));
+        long seed = config.getLong("seed", System.nanoTime());
+        File directory = config.isSet("migrationDir") ? new File(config.getString("migrationDir"))
+                : Files.createTempDirectory("islands").toFile();
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create migration directory " + directory);
+        }
+        Migrants.clear(directory);
+
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        List<Process> processes = new ArrayList<Process>();
+        long start = System.nanoTime();
+        for(int island = 0; island < islands; island++) {
+            List<String> command = new ArrayList<String>(Arrays.asList(java, "-cp", System.getProperty("java.class.path"),
+                    "TetrisGA.geneticOperations"));
+            command.addAll(Arrays.asList(args));
+            command.add("--island=" + island);
+            command.add("--threads=" + threads);
+            command.add("--seed=" + seed);
+            command.add("--migrationDir=" + directory.getPath());
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(new File(directory, "island-" + island + ".log"));
+            processes.add(builder.start());
+        }
+        System.out.println(islands + " islands with " + threads + " threads each, seed " + seed + ", logs in " + directory);
+
+        int failed = 0;
+        for(int island = 0; island < islands; island++) {
+            if(processes.get(island).waitFor() != 0) {
+                System.out.println("Island " + island + " failed, see island-" + island + ".log");
+                failed++;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+
+        long evaluations = 0;
+        double bestFitness = Double.NEGATIVE_INFINITY;
+        double[] best = null;
+        for(int island = 0; island < islands; island++) {
+            File file = Migrants.getFinalFile(directory, island);
+            if(!file.exists()) {
+                continue;
+            }
+            Migrants result = Migrants.read(file);
+            Population population = result.getPopulation();
+            evaluations += result.getEvaluations();
+            System.out.println(String.format("Island %d: best %.0f after %d generations", island,
+                    population.getFitness(0), result.getGeneration()));
+            if(population.getFitness(0) > bestFitness) {
+                bestFitness = population.getFitness(0);
+                best = population.getWeights(0, new double[Population.GENE_COUNT]);
+            }
+        }
+        System.out.println(String.format("Islands: %d evaluations in %.1f s, %.1f evaluations/sec", evaluations, nanos / 1e9,
+                evaluations * 1e9 / nanos));
+        if(best != null) {
+            System.out.println("Best: " + Arrays.toString(best) + " " + bestFitness);
+        }
+        if(failed > 0) {
+            System.exit(1);
+        }
+    }
+
+}
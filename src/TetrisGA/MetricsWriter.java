@@ -0,0 +1,244 @@
+package TetrisGA;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The {@code MetricsWriter} class appends the progress of a run to a file,
+ * one JSON object per line: a record per evaluated chromosome and a summary
+ * per generation. The caller only queues the numbers; a background thread
+ * turns them into text and writes them through a large buffer, so neither the
+ * run nor the evaluator threads wait for the disk.
+ *
+ * The queue is bounded. If the writer ever falls behind by
+ * {@code QUEUE_CAPACITY} records, the thread recording them waits for it
+ * instead of growing the queue without limit.
+ *
+ */
+public final class MetricsWriter {
+
+    /**
+     * The most records waiting to be written.
+     */
+    public static final int QUEUE_CAPACITY = 1 << 16;
+
+    /**
+     * The names of the numbers in an evaluation record.
+     */
+    private static final String[] EVALUATION = {
+        "generation", "chromosome", "fitness", "games", "variance", "linesPerPiece", "scorePerPiece", "survivalRate",
+    };
+
+    /**
+     * The names of the numbers in a generation record.
+     */
+    private static final String[] GENERATION = {
+        "generation", "evaluations", "best", "mean", "median", "std", "diversity", "evaluationsPerSecond", "wallSeconds",
+    };
+
+    /**
+     * A record waiting to be written.
+     */
+    private static final class Record {
+
+        private final String type;
+
+        private final String[] names;
+
+        private final double[] values;
+
+        private Record(String type, String[] names, double[] values) {
+            this.type = type;
+            this.names = names;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Tells the background thread to flush and stop.
+     */
+    private static final Record END = new Record(null, null, null);
+
+    private final BlockingQueue<Record> queue = new ArrayBlockingQueue<Record>(QUEUE_CAPACITY);
+
+    private final Writer out;
+
+    private final Thread thread;
+
+    /**
+     * The first error the background thread ran into, reported by {@code close}.
+     */
+    private volatile IOException failure;
+
+    /**
+     * Opens a metrics file, appending to it if it exists, and starts the
+     * thread that writes to it.
+     * @param path The path of the file.
+     * @throws IOException If the file can't be opened.
+     */
+    public MetricsWriter(String path) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path, true), StandardCharsets.UTF_8), 1 << 16);
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "metrics-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Records the evaluation of a chromosome.
+     * @param generation The generation, or the number of children evaluated so far in a steady-state run.
+     * @param chromosome The index of the chromosome.
+     * @param population The population of the chromosome.
+     * @param linesPerPiece The mean lines per piece of its games.
+     * @param scorePerPiece The mean score per piece of its games.
+     * @param survivalRate The share of its games that survived until a limit stopped them.
+     */
+    public void recordEvaluation(long generation, int chromosome, Population population,
+                                 double linesPerPiece, double scorePerPiece, double survivalRate) {
+        put(new Record("evaluation", EVALUATION, new double[] {
+            generation, chromosome, population.getFitness(chromosome), population.getGames(chromosome),
+            population.getVariance(chromosome), linesPerPiece, scorePerPiece, survivalRate,
+        }));
+    }
+
+    /**
+     * Records a summary of a generation: its best, mean, median and standard
+     * deviation of fitness, and its diversity, the mean standard deviation of
+     * a gene as a share of the range genes are drawn from.
+     * @param generation The generation.
+     * @param evaluations The number of chromosomes evaluated so far in the run.
+     * @param population The evaluated population.
+     * @param geneRange The range genes are drawn from.
+     * @param evaluationsPerSecond The evaluations per second of the generation.
+     * @param wallSeconds The time since the run started, in seconds.
+     */
+    public void recordGeneration(long generation, long evaluations, Population population, double geneRange,
+                                 double evaluationsPerSecond, double wallSeconds) {
+        int n = population.size();
+        double[] fitness = new double[n];
+        double sum = 0;
+        for(int i = 0; i < n; i++) {
+            fitness[i] = population.getFitness(i);
+            sum += fitness[i];
+        }
+        double mean = sum / n;
+        double squares = 0;
+        for(int i = 0; i < n; i++) {
+            squares += (fitness[i] - mean) * (fitness[i] - mean);
+        }
+        Arrays.sort(fitness);
+        double median = n % 2 == 1 ? fitness[n / 2] : (fitness[n / 2 - 1] + fitness[n / 2]) / 2;
+
+        double diversity = 0;
+        for(int gene = 0; gene < Population.GENE_COUNT; gene++) {
+            double geneMean = 0;
+            for(int i = 0; i < n; i++) {
+                geneMean += population.getGene(i, gene);
+            }
+            geneMean /= n;
+            double geneSquares = 0;
+            for(int i = 0; i < n; i++) {
+                double difference = population.getGene(i, gene) - geneMean;
+                geneSquares += difference * difference;
+            }
+            diversity += Math.sqrt(geneSquares / n);
+        }
+        diversity /= Population.GENE_COUNT * geneRange;
+
+        put(new Record("generation", GENERATION, new double[] {
+            generation, evaluations, fitness[n - 1], mean, median, Math.sqrt(squares / n), diversity,
+            evaluationsPerSecond, wallSeconds,
+        }));
+    }
+
+    /**
+     * Writes every queued record, flushes the file and closes it.
+     * @throws IOException If a record or the file couldn't be written.
+     */
+    public void close() throws IOException {
+        put(END);
+        try {
+            thread.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing metrics", e);
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    private void put(Record record) {
+        try {
+            queue.put(record);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while recording metrics", e);
+        }
+    }
+
+    /**
+     * Writes records until told to stop. After an error the records are
+     * still taken off the queue, so the run never waits on a dead file.
+     */
+    private void drain() {
+        StringBuilder line = new StringBuilder(256);
+        try {
+            while(true) {
+                Record record = queue.take();
+                if(record == END) {
+                    break;
+                }
+                if(failure != null) {
+                    continue;
+                }
+                try {
+                    line.setLength(0);
+                    format(record, line);
+                    out.append(line);
+                } catch(IOException e) {
+                    failure = e;
+                }
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                out.close();
+            } catch(IOException e) {
+                if(failure == null) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    private static void format(Record record, StringBuilder line) {
+        line.append("{\"type\":\"").append(record.type).append('"');
+        for(int i = 0; i < record.names.length; i++) {
+            line.append(",\"").append(record.names[i]).append("\":");
+            double value = record.values[i];
+            if(value == (long)value) {
+                line.append((long)value);
+            } else if(Double.isNaN(value) || Double.isInfinite(value)) {
+                //JSON has no NaN or infinity.
+                line.append("null");
+            } else {
+                line.append(value);
+            }
+        }
+        line.append("}\n");
+    }
+
+}
@@ -0,0 +1,218 @@
+package TetrisGA;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The {@code Migrants} class is a batch of chromosomes one island of an
+ * island model sends to the others, through a directory they all share. An
+ * island writes a batch named {@code island-<island>-<generation>.bin} every
+ * time it migrates, and one named {@code island-<island>-final.bin} when it
+ * stops, which also tells the others not to wait for it any more.
+ *
+ * A batch is written to a temporary file and renamed into place, so a reader
+ * never sees half of one. Batches left from an earlier run in the same
+ * directory would be taken for new ones, so they have to be cleared before
+ * any island of a new run starts.
+ *
+ */
+public final class Migrants {
+
+    /**
+     * The first four bytes of a batch, "TGAM".
+     */
+    public static final int MAGIC = 0x5447414d;
+
+    /**
+     * The island that sent the batch.
+     */
+    private final int island;
+
+    /**
+     * The generation the batch was sent after.
+     */
+    private final long generation;
+
+    /**
+     * The number of chromosomes the island had evaluated when it sent the batch.
+     */
+    private final long evaluations;
+
+    /**
+     * The chromosomes, with their evaluation.
+     */
+    private final Population population;
+
+    /**
+     * Creates a batch.
+     * @param island The island that sends it.
+     * @param generation The generation it is sent after.
+     * @param evaluations The number of chromosomes the island evaluated so far.
+     * @param population The chromosomes.
+     */
+    public Migrants(int island, long generation, long evaluations, Population population) {
+        this.island = island;
+        this.generation = generation;
+        this.evaluations = evaluations;
+        this.population = population;
+    }
+
+    /**
+     * Gets the file of the batch an island sends after a generation.
+     * @param directory The shared directory.
+     * @param island The island.
+     * @param generation The generation.
+     * @return The file.
+     */
+    public static File getFile(File directory, int island, long generation) {
+        return new File(directory, "island-" + island + "-" + generation + ".bin");
+    }
+
+    /**
+     * Gets the file of the last batch an island sends, when it stops.
+     * @param directory The shared directory.
+     * @param island The island.
+     * @return The file.
+     */
+    public static File getFinalFile(File directory, int island) {
+        return new File(directory, "island-" + island + "-final.bin");
+    }
+
+    /**
+     * Deletes every batch in a directory, of every island, along with any
+     * temporary file a crashed island left behind.
+     * @param directory The shared directory.
+     * @throws IOException If a batch can't be deleted.
+     */
+    public static void clear(File directory) throws IOException {
+        clear(directory, "island-");
+    }
+
+    /**
+     * Deletes the batches one island sent in a directory, along with any
+     * temporary file it left behind.
+     * @param directory The shared directory.
+     * @param island The island.
+     * @throws IOException If a batch can't be deleted.
+     */
+    public static void clear(File directory, int island) throws IOException {
+        clear(directory, "island-" + island + "-");
+    }
+
+    private static void clear(File directory, String prefix) throws IOException {
+        File[] files = directory.listFiles();
+        for(int i = 0; files != null && i < files.length; i++) {
+            String name = files[i].getName();
+            if(name.startsWith(prefix) && (name.endsWith(".bin") || name.endsWith(".bin.tmp"))
+                    && !files[i].delete() && files[i].exists()) {
+                throw new IOException("Can't delete the old batch " + files[i]);
+            }
+        }
+    }
+
+    /**
+     * Writes the batch atomically.
+     * @param file The file to write it to.
+     * @throws IOException If it can't be written.
+     */
+    public void write(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(island);
+            out.writeLong(generation);
+            out.writeLong(evaluations);
+            out.writeInt(population.size());
+            for(int i = 0; i < population.size(); i++) {
+                for(int gene = 0; gene < Population.GENE_COUNT; gene++) {
+                    out.writeDouble(population.getGene(i, gene));
+                }
+                out.writeDouble(population.getFitness(i));
+                out.writeInt(population.getGames(i));
+                out.writeDouble(population.getVariance(i));
+            }
+        } finally {
+            out.close();
+        }
+
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads a batch.
+     * @param file The file of the batch.
+     * @return The batch.
+     * @throws IOException If it can't be read or isn't a batch.
+     */
+    public static Migrants read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if(in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a batch of migrants");
+            }
+            int island = in.readInt();
+            long generation = in.readLong();
+            long evaluations = in.readLong();
+            Population population = new Population(in.readInt());
+            for(int i = 0; i < population.size(); i++) {
+                for(int gene = 0; gene < Population.GENE_COUNT; gene++) {
+                    population.setGene(i, gene, in.readDouble());
+                }
+                double fitness = in.readDouble();
+                int games = in.readInt();
+                population.setEvaluation(i, fitness, games, in.readDouble());
+            }
+            return new Migrants(island, generation, evaluations, population);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Gets the island that sent the batch.
+     * @return The island.
+     */
+    public int getIsland() {
+        return island;
+    }
+
+    /**
+     * Gets the generation the batch was sent after.
+     * @return The generation.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Gets the number of chromosomes the island had evaluated when it sent
+     * the batch.
+     * @return The number of evaluations.
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Gets the chromosomes, best first.
+     * @return The chromosomes.
+     */
+    public Population getPopulation() {
+        return population;
+    }
+
+}
@@ -0,0 +1,1003 @@
+package TetrisGA;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@code ParallelEvaluator} class is responsible for playing the fitness
+ * games of a whole population on a fixed pool of worker threads. Every
+ * (chromosome, game) pair is a separate task, and every worker keeps its own
+ * {@link GameEngine}, so the workers share nothing but the population they
+ * read the weights from.
+ *
+ * Every game gets its own seed, drawn up front from the evaluator's seed and
+ * the number of the round, and the worker playing it generates its pieces
+ * from that seed alone. The scores therefore don't depend on which worker
+ * plays which game, and a run can be repeated exactly, or resumed from any
+ * round.
+ *
+ * With common random numbers switched on, every chromosome of a generation
+ * plays the same {@code numberOfGames} sequences instead, which are generated
+ * once and shared by all workers. Chromosomes are then compared on the same
+ * pieces, so the luck of the draw mostly cancels out of their ranking.
+ *
+ * Games can be capped by a piece budget and a score cap, so one strong
+ * chromosome can't stall a whole generation. The fitness of a chromosome is
+ * then the mean of {@link GameResult#getFitness(int)} over its games.
+ *
+ * The evaluator can also race the population for the elite places: the
+ * chromosomes that clearly can't make it stop playing early, and the games
+ * they would have played are saved.
+ *
+ * With a {@link FitnessCache}, a chromosome whose weights have already played
+ * {@code numberOfGames} games isn't played again, and copies of the same
+ * weights within a population are played only once. With common random
+ * numbers, only games played on the sequences of the current round count, so
+ * a lucky score isn't carried over to generations that play other pieces.
+ *
+ * Besides whole populations, single chromosomes can be submitted and taken
+ * back as soon as their games are done, for a steady-state algorithm that
+ * never waits for the slowest chromosome of a generation.
+ *
+ * With a {@link Coordinator}, the games of whole populations are played by
+ * remote workers instead of the local threads, on the same seeds, so they
+ * score exactly the same.
+ *
+ */
+public class ParallelEvaluator {
+
+    /**
+     * The number of games everyone plays before the first chromosomes can
+     * drop out of a race. A single game says little about a player whose
+     * scores are as skewed as in Tetris.
+     */
+    public static final int FIRST_ROUND_GAMES = 3;
+
+    /**
+     * How many standard errors above its mean a chromosome may still turn
+     * out to be when deciding whether it drops out of a race.
+     */
+    private static final double RACE_CONFIDENCE = 3.0;
+
+    /**
+     * The smallest standard deviation of the log of a chromosome's scores
+     * assumed in a race. Scores are roughly exponentially distributed, and
+     * the log of an exponential variable has a standard deviation of
+     * {@code pi / sqrt(6)}, whatever its mean.
+     */
+    private static final double MIN_LOG_DEVIATION = Math.PI / Math.sqrt(6);
+
+    /**
+     * The round the sequences of submitted chromosomes are drawn for with
+     * common random numbers.
+     */
+    private static final long STEADY_ROUND = -1;
+
+    /**
+     * The cache key of games played on sequences of their own, which can be
+     * merged whichever round they were played in.
+     */
+    private static final long INDEPENDENT_GAMES = Long.MIN_VALUE;
+
+    /**
+     * The number of worker threads.
+     */
+    private final int threads;
+
+    /**
+     * The worker pool the games are played on.
+     */
+    private final ExecutorService pool;
+
+    /**
+     * The engine each worker plays its games on.
+     */
+    private final ThreadLocal<GameEngine> engines = new ThreadLocal<GameEngine>() {
+        @Override
+        protected GameEngine initialValue() {
+            return new GameEngine(new Evaluator(new double[Population.GENE_COUNT]));
+        }
+    };
+
+    /**
+     * How the pieces of every game are drawn.
+     */
+    private final Randomizer randomizer;
+
+    /**
+     * The seed the seeds of the games are derived from.
+     */
+    private final long seed;
+
+    /**
+     * The number of populations and single chromosomes evaluated so far.
+     * Every one of them draws its seeds from its own round.
+     */
+    private long rounds;
+
+    /**
+     * Whether every chromosome plays the same sequences.
+     */
+    private boolean commonRandomNumbers;
+
+    /**
+     * The most pieces a game may place.
+     */
+    private int pieceBudget = Integer.MAX_VALUE;
+
+    /**
+     * The score a game stops at.
+     */
+    private int scoreCap = Integer.MAX_VALUE;
+
+    /**
+     * The fitness of every game of the last call to {@code evaluate},
+     * chromosome by chromosome.
+     */
+    private double[] lastScores = new double[0];
+
+    /**
+     * The mean lines per piece, score per piece and share of surviving games
+     * of every chromosome of the last call to {@code evaluate}.
+     */
+    private double[] linesPerPiece = new double[0];
+    private double[] scorePerPiece = new double[0];
+    private double[] survivalRate = new double[0];
+
+    /**
+     * The number of games every chromosome played in the last call to
+     * {@code evaluate}, and whether it was still in the race at the end.
+     */
+    private int[] gamesPlayed = new int[0];
+    private boolean[] racing = new boolean[0];
+
+    /**
+     * The games already played by every weight vector, or {@code null} to
+     * play every chromosome from scratch.
+     */
+    private FitnessCache cache;
+
+    /**
+     * The workers that play the games of {@code evaluate}, or {@code null} to
+     * play them on the local threads.
+     */
+    private Coordinator coordinator;
+
+    /**
+     * The cache entry of every chromosome in the last call to {@code evaluate},
+     * whether it was known before the call, and the chromosome whose games it
+     * shares if it is a copy of an earlier one.
+     */
+    private FitnessCache.Entry[] cacheEntries = new FitnessCache.Entry[0];
+    private boolean[] cached = new boolean[0];
+    private int[] copyOf = new int[0];
+
+    /**
+     * The number of chromosomes the last call to {@code evaluate} didn't have
+     * to play at all.
+     */
+    private int lastCacheHits;
+
+    /**
+     * The number of chromosomes and games per chromosome of the last call
+     * to {@code evaluate}.
+     */
+    private int lastChromosomes;
+    private int lastGamesPerChromosome;
+
+    /**
+     * The number of games played by the last call to {@code evaluate}.
+     */
+    private long lastGames;
+
+    /**
+     * The wall time of the last call to {@code evaluate}, in nanoseconds.
+     */
+    private long lastNanos;
+
+    /**
+     * The time the workers spent playing games during the last call to
+     * {@code evaluate}, in nanoseconds.
+     */
+    private long lastBusyNanos;
+
+    /**
+     * The time the workers have spent playing games since the evaluator was
+     * created, in nanoseconds.
+     */
+    private final AtomicLong busyNanos = new AtomicLong();
+
+    /**
+     * The chromosomes submitted on their own whose games are being played.
+     */
+    private final CompletionService<ChromosomeTask> completions;
+
+    /**
+     * The submitted chromosomes that were done without playing, because
+     * their games were cached.
+     */
+    private final ArrayDeque<Integer> ready = new ArrayDeque<Integer>();
+
+    /**
+     * The sequences every submitted chromosome plays with common random
+     * numbers. There is no generation to draw new ones for, so they are
+     * drawn once.
+     */
+    private PieceSequence[] steadySequences;
+
+    /**
+     * Creates a new evaluator.
+     * @param threads The number of worker threads to play games on.
+     * @param randomizer How the pieces of every game are drawn.
+     * @param seed The seed the seeds of the games are drawn from.
+     */
+    public ParallelEvaluator(int threads, Randomizer randomizer, long seed) {
+        this.threads = threads;
+        this.randomizer = randomizer;
+        this.seed = seed;
+        this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count;
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "evaluator-" + (count++));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.completions = new ExecutorCompletionService<ChromosomeTask>(pool);
+    }
+
+    /**
+     * Plays {@code numberOfGames} games for every chromosome and records
+     * the average fitness of each chromosome in the population.
+     * @param population The population to evaluate.
+     * @param numberOfGames The number of games to play per chromosome.
+     */
+    public void evaluate(Population population, int numberOfGames) {
+        evaluate(population, numberOfGames, 0);
+    }
+
+    /**
+     * Plays up to {@code numberOfGames} games for every chromosome, racing
+     * them for the top {@code contenders} places, and records the average
+     * fitness of each chromosome in the population.
+     *
+     * Everyone plays {@code FIRST_ROUND_GAMES} games first. After every round
+     * a chromosome drops out if even an optimistic estimate of its mean can't
+     * reach the current mean of the contenders-th best, and the rest play
+     * twice as many games as before, until they have played all
+     * {@code numberOfGames}. A chromosome that dropped out keeps the mean of
+     * the games it played. Every game is played on the seed it would have
+     * had without racing, so the chromosomes that stay in the race get
+     * exactly the fitness a full evaluation would give them.
+     * @param population The population to evaluate.
+     * @param numberOfGames The number of games to play per chromosome.
+     * @param contenders The number of places to race for, or 0 to play every
+     * game for everyone.
+     */
+    public void evaluate(Population population, int numberOfGames, int contenders) {
+        long start = System.nanoTime();
+        long busyStart = busyNanos.get();
+        int n = population.size();
+        long round = rounds++;
+        SplittableRandom seeds = getSeeds(round);
+        //Common sequences are new every round, so are the games worth reusing.
+        long sequencesKey = commonRandomNumbers ? round : INDEPENDENT_GAMES;
+
+        PieceSequence[] common = null;
+        long[] gameSeeds = null;
+        if(commonRandomNumbers) {
+            common = new PieceSequence[numberOfGames];
+            for(int game = 0; game < numberOfGames; game++) {
+                common[game] = new PieceSequence(randomizer, seeds.nextLong());
+            }
+        } else {
+            //Drawn chromosome by chromosome, the same order as without racing.
+            gameSeeds = new long[n * numberOfGames];
+            for(int i = 0; i < gameSeeds.length; i++) {
+                gameSeeds[i] = seeds.nextLong();
+            }
+        }
+
+        if(lastScores.length != n * numberOfGames) {
+            lastScores = new double[n * numberOfGames];
+        }
+        if(linesPerPiece.length != n) {
+            linesPerPiece = new double[n];
+            scorePerPiece = new double[n];
+            survivalRate = new double[n];
+            gamesPlayed = new int[n];
+            racing = new boolean[n];
+            cacheEntries = new FitnessCache.Entry[n];
+            cached = new boolean[n];
+            copyOf = new int[n];
+        }
+        Arrays.fill(linesPerPiece, 0);
+        Arrays.fill(scorePerPiece, 0);
+        Arrays.fill(survivalRate, 0);
+        Arrays.fill(gamesPlayed, 0);
+        Arrays.fill(racing, true);
+        Arrays.fill(cacheEntries, null);
+        Arrays.fill(cached, false);
+        lastCacheHits = 0;
+        IdentityHashMap<FitnessCache.Entry, Integer> firsts = new IdentityHashMap<FitnessCache.Entry, Integer>();
+        for(int i = 0; i < n; i++) {
+            copyOf[i] = i;
+            if(cache == null) {
+                continue;
+            }
+            FitnessCache.Entry entry = cache.getOrCreate(population, i, sequencesKey);
+            Integer first = firsts.get(entry);
+            if(first != null) {
+                copyOf[i] = first;
+                racing[i] = false;
+                lastCacheHits++;
+                continue;
+            }
+            firsts.put(entry, i);
+            cacheEntries[i] = entry;
+            if(entry.getGames() >= numberOfGames) {
+                cached[i] = true;
+                racing[i] = false;
+                lastCacheHits++;
+            }
+        }
+
+        int games = 0;
+        int target = contenders > 0 ? Math.min(FIRST_ROUND_GAMES, numberOfGames) : numberOfGames;
+        List<GameTask> tasks = new ArrayList<GameTask>();
+        while(true) {
+            tasks.clear();
+            for(int i = 0; i < n; i++) {
+                if(!racing[i]) {
+                    continue;
+                }
+                for(int game = gamesPlayed[i]; game < target; game++) {
+                    if(common != null) {
+                        tasks.add(new GameTask(population, i, game, common[game]));
+                    } else {
+                        tasks.add(new GameTask(population, i, game, gameSeeds[i * numberOfGames + game]));
+                    }
+                }
+                gamesPlayed[i] = target;
+            }
+            play(tasks, numberOfGames);
+            games += tasks.size();
+
+            if(target == numberOfGames) {
+                break;
+            }
+            dropOutsiders(contenders, numberOfGames);
+            target = Math.min(target * 2, numberOfGames);
+        }
+
+        for(int i = 0; i < n; i++) {
+            FitnessCache.Entry entry = cacheEntries[i];
+            if(copyOf[i] != i) {
+                continue;
+            } else if(entry != null) {
+                //Everything the weights have played, this call and before.
+                population.setEvaluation(i, entry.getFitness(), entry.getGames(), entry.getVariance());
+                linesPerPiece[i] = entry.getLinesPerPiece();
+                scorePerPiece[i] = entry.getScorePerPiece();
+                survivalRate[i] = entry.getSurvivalRate();
+            } else {
+                double mean = getMean(i, numberOfGames);
+                double deviation = getDeviation(i, numberOfGames, mean);
+                population.setEvaluation(i, mean, gamesPlayed[i], deviation * deviation);
+                linesPerPiece[i] /= gamesPlayed[i];
+                scorePerPiece[i] /= gamesPlayed[i];
+                survivalRate[i] /= gamesPlayed[i];
+            }
+        }
+        for(int i = 0; i < n; i++) {
+            int first = copyOf[i];
+            if(first != i) {
+                population.setEvaluation(i, population.getFitness(first), population.getGames(first), population.getVariance(first));
+                linesPerPiece[i] = linesPerPiece[first];
+                scorePerPiece[i] = scorePerPiece[first];
+                survivalRate[i] = survivalRate[first];
+            }
+        }
+
+        lastChromosomes = n;
+        lastGamesPerChromosome = numberOfGames;
+        lastGames = games;
+        lastNanos = System.nanoTime() - start;
+        lastBusyNanos = busyNanos.get() - busyStart;
+    }
+
+    /**
+     * Starts playing {@code numberOfGames} games for a single chromosome and
+     * returns at once. Its index is handed back by {@code take} once its
+     * evaluation is recorded in the population. The chromosome must not be
+     * changed until then, and this must be called from the thread that
+     * calls {@code take}.
+     * @param population The population of the chromosome.
+     * @param chromosome The index of the chromosome.
+     * @param numberOfGames The number of games to play.
+     */
+    public void submit(Population population, int chromosome, int numberOfGames) {
+        FitnessCache.Entry entry = null;
+        if(cache != null) {
+            entry = cache.getOrCreate(population, chromosome, commonRandomNumbers ? STEADY_ROUND : INDEPENDENT_GAMES);
+            if(entry.getGames() >= numberOfGames) {
+                population.setEvaluation(chromosome, entry.getFitness(), entry.getGames(), entry.getVariance());
+                ready.add(chromosome);
+                return;
+            }
+        }
+
+        PieceSequence[] sequences = null;
+        long[] gameSeeds = null;
+        if(commonRandomNumbers) {
+            if(steadySequences == null || steadySequences.length != numberOfGames) {
+                //Not from a round, so they are the same after a resume.
+                SplittableRandom seeds = getSeeds(STEADY_ROUND);
+                steadySequences = new PieceSequence[numberOfGames];
+                for(int game = 0; game < numberOfGames; game++) {
+                    steadySequences[game] = new PieceSequence(randomizer, seeds.nextLong());
+                }
+            }
+            sequences = steadySequences;
+        } else {
+            SplittableRandom seeds = getSeeds(rounds++);
+            gameSeeds = new long[numberOfGames];
+            for(int game = 0; game < numberOfGames; game++) {
+                gameSeeds[game] = seeds.nextLong();
+            }
+        }
+        completions.submit(new ChromosomeTask(population, chromosome, entry, sequences, gameSeeds));
+    }
+
+    /**
+     * Waits for the next submitted chromosome to finish its games, and
+     * records its evaluation in its population.
+     * @return The index of the chromosome.
+     */
+    public int take() {
+        if(!ready.isEmpty()) {
+            return ready.poll();
+        }
+
+        ChromosomeTask task;
+        try {
+            task = completions.take().get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating a chromosome", e);
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("A fitness game failed", e.getCause());
+        }
+
+        int games = task.results.length;
+        double sum = 0;
+        double squares = 0;
+        for(GameResult result : task.results) {
+            double fitness = result.getFitness(pieceBudget);
+            sum += fitness;
+            squares += fitness * fitness;
+            if(task.entry != null) {
+                task.entry.add(result, fitness);
+            }
+        }
+        if(task.entry != null) {
+            task.population.setEvaluation(task.index, task.entry.getFitness(), task.entry.getGames(), task.entry.getVariance());
+        } else {
+            double mean = sum / games;
+            double variance = games < 2 ? 0 : Math.max(0, (squares - sum * mean) / (games - 1));
+            task.population.setEvaluation(task.index, mean, games, variance);
+        }
+        return task.index;
+    }
+
+    /**
+     * Gets a generator for the seeds of a round. The seed of the round is
+     * scrambled first, so neighbouring rounds get unrelated streams.
+     * @param round The round.
+     * @return The generator.
+     */
+    private SplittableRandom getSeeds(long round) {
+        return new SplittableRandom(new SplittableRandom(seed + round).nextLong());
+    }
+
+    /**
+     * Gets the number of rounds evaluated so far, to save in a checkpoint.
+     * @return The number of rounds.
+     */
+    public long getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Continues from a checkpoint, so the next rounds draw the same seeds
+     * they would have without the interruption.
+     * @param rounds The number of rounds evaluated before the checkpoint.
+     */
+    public void setRounds(long rounds) {
+        this.rounds = rounds;
+    }
+
+    /**
+     * Gets the time the workers have spent playing games since the evaluator
+     * was created.
+     * @return The busy time, in nanoseconds.
+     */
+    public long getBusyNanos() {
+        return busyNanos.get();
+    }
+
+    /**
+     * Gets the share of the workers' time spent playing games during the
+     * last call to {@code evaluate}. The rest was spent waiting, mostly for
+     * the last games of the population to finish.
+     * @return The utilisation, between 0 and 1.
+     */
+    public double getUtilisation() {
+        return lastNanos == 0 ? 0 : lastBusyNanos / ((double)lastNanos * threads);
+    }
+
+    /**
+     * Gets the number of chromosomes per second evaluated by the last call
+     * to {@code evaluate}.
+     * @return The evaluations per second.
+     */
+    public double getEvaluationsPerSecond() {
+        return lastNanos == 0 ? 0 : lastChromosomes * 1e9 / lastNanos;
+    }
+
+    /**
+     * Plays a round of games and records their results.
+     * @param tasks The games to play.
+     * @param numberOfGames The number of games per chromosome.
+     */
+    private void play(List<GameTask> tasks, int numberOfGames) {
+        GameResult[] results = coordinator != null ? playRemotely(tasks) : playLocally(tasks);
+
+        for(int t = 0; t < tasks.size(); t++) {
+            GameTask task = tasks.get(t);
+            GameResult result = results[t];
+            double fitness = result.getFitness(pieceBudget);
+            lastScores[task.index * numberOfGames + task.game] = fitness;
+            if(cacheEntries[task.index] != null) {
+                cacheEntries[task.index].add(result, fitness);
+            }
+            linesPerPiece[task.index] += result.getLinesPerPiece();
+            scorePerPiece[task.index] += result.getScorePerPiece();
+            if(result.isSurvived()) {
+                survivalRate[task.index]++;
+            }
+        }
+    }
+
+    private GameResult[] playLocally(List<GameTask> tasks) {
+        List<Future<GameResult>> futures;
+        try {
+            futures = pool.invokeAll(tasks);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating the population", e);
+        }
+        GameResult[] results = new GameResult[tasks.size()];
+        for(int t = 0; t < results.length; t++) {
+            results[t] = getResult(futures.get(t));
+        }
+        return results;
+    }
+
+    private GameResult[] playRemotely(List<GameTask> tasks) {
+        double[] weights = new double[tasks.size() * Population.GENE_COUNT];
+        long[] seeds = new long[tasks.size()];
+        double[] chromosome = new double[Population.GENE_COUNT];
+        for(int t = 0; t < seeds.length; t++) {
+            GameTask task = tasks.get(t);
+            task.population.getWeights(task.index, chromosome);
+            System.arraycopy(chromosome, 0, weights, t * Population.GENE_COUNT, Population.GENE_COUNT);
+            seeds[t] = task.seed;
+        }
+        return coordinator.play(weights, seeds, randomizer, pieceBudget, scoreCap);
+    }
+
+    /**
+     * Takes the chromosomes that can't make the top {@code contenders} out
+     * of the race.
+     *
+     * Scores of a Tetris player are heavy-tailed, so a normal bound on the
+     * mean of a few games is far too tight: one unlucky game would sink a
+     * strong chromosome. The bound is taken on the log of the scores
+     * instead, treating them as log-normal, with Cox's interval for the
+     * mean of a log-normal variable. The standard deviation of the logs is
+     * taken to be at least {@code MIN_LOG_DEVIATION}, so games that happen
+     * to score alike don't make a chromosome look more certain than it is.
+     * @param contenders The number of places raced for.
+     * @param numberOfGames The number of games per chromosome.
+     */
+    private void dropOutsiders(int contenders, int numberOfGames) {
+        int n = gamesPlayed.length;
+        double[] means = new double[n];
+        int count = 0;
+        for(int i = 0; i < n; i++) {
+            if(racing[i]) {
+                means[count++] = getMean(i, numberOfGames);
+            } else if(cached[i]) {
+                //Chromosomes known from the cache still hold their places.
+                means[count++] = cacheEntries[i].getFitness();
+            }
+        }
+        if(count <= contenders) {
+            return;
+        }
+        Arrays.sort(means, 0, count);
+        double threshold = means[count - contenders];
+
+        for(int i = 0; i < n; i++) {
+            if(racing[i] && getUpperBound(i, numberOfGames) < threshold) {
+                racing[i] = false;
+            }
+        }
+    }
+
+    /**
+     * Estimates how high the mean fitness of a chromosome could still turn
+     * out to be, from the games it has played so far.
+     * @param chromosome The index of the chromosome.
+     * @param numberOfGames The number of games per chromosome.
+     * @return The upper bound of its mean.
+     */
+    private double getUpperBound(int chromosome, int numberOfGames) {
+        int games = gamesPlayed[chromosome];
+        double sum = 0;
+        for(int game = 0; game < games; game++) {
+            sum += Math.log1p(Math.max(0, lastScores[chromosome * numberOfGames + game]));
+        }
+        double mean = sum / games;
+        double squares = 0;
+        for(int game = 0; game < games; game++) {
+            double difference = Math.log1p(Math.max(0, lastScores[chromosome * numberOfGames + game])) - mean;
+            squares += difference * difference;
+        }
+        double variance = games < 2 ? 0 : squares / (games - 1);
+        variance = Math.max(variance, MIN_LOG_DEVIATION * MIN_LOG_DEVIATION);
+
+        //Cox: the mean of a log-normal variable is exp(mu + sigma^2 / 2).
+        double error = Math.sqrt(variance / games + variance * variance / (2.0 * Math.max(1, games - 1)));
+        return Math.expm1(mean + variance / 2 + RACE_CONFIDENCE * error);
+    }
+
+    /**
+     * Switches common random numbers on or off for the following generations.
+     * @param commonRandomNumbers Whether every chromosome should play the same sequences.
+     */
+    public void setCommonRandomNumbers(boolean commonRandomNumbers) {
+        this.commonRandomNumbers = commonRandomNumbers;
+    }
+
+    /**
+     * Sets the most pieces a game may place.
+     * @param pieceBudget The piece budget, or {@code Integer.MAX_VALUE} for none.
+     */
+    public void setPieceBudget(int pieceBudget) {
+        this.pieceBudget = pieceBudget;
+        if(cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Sets the score a game stops at.
+     * @param scoreCap The score cap, or {@code Integer.MAX_VALUE} for none.
+     */
+    public void setScoreCap(int scoreCap) {
+        this.scoreCap = scoreCap;
+        if(cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Sets the cache of games already played.
+     * @param cache The cache, or {@code null} to play every chromosome from scratch.
+     */
+    public void setFitnessCache(FitnessCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Sets the workers that play the games of {@code evaluate}. Chromosomes
+     * submitted on their own are still played on the local threads.
+     * @param coordinator The coordinator of the workers, or {@code null} to play locally.
+     */
+    public void setCoordinator(Coordinator coordinator) {
+        this.coordinator = coordinator;
+    }
+
+    /**
+     * Gets the number of chromosomes the last call to {@code evaluate} took
+     * from the cache or from an identical chromosome instead of playing them.
+     * @return The number of cache hits.
+     */
+    public int getCacheHits() {
+        return lastCacheHits;
+    }
+
+    /**
+     * Gets the mean lines per piece of a chromosome in the last call to
+     * {@code evaluate}.
+     * @param chromosome The index of the chromosome.
+     * @return The lines per piece.
+     */
+    public double getLinesPerPiece(int chromosome) {
+        return linesPerPiece[chromosome];
+    }
+
+    /**
+     * Gets the mean score per piece of a chromosome in the last call to
+     * {@code evaluate}.
+     * @param chromosome The index of the chromosome.
+     * @return The score per piece.
+     */
+    public double getScorePerPiece(int chromosome) {
+        return scorePerPiece[chromosome];
+    }
+
+    /**
+     * Gets the share of the games of a chromosome in the last call to
+     * {@code evaluate} that survived until a limit stopped them.
+     * @param chromosome The index of the chromosome.
+     * @return The survival rate, between 0 and 1.
+     */
+    public double getSurvivalRate(int chromosome) {
+        return survivalRate[chromosome];
+    }
+
+    /**
+     * Checks whether every chromosome plays the same sequences.
+     * @return Whether common random numbers are on.
+     */
+    public boolean isCommonRandomNumbers() {
+        return commonRandomNumbers;
+    }
+
+    /**
+     * Estimates how much less noisy the comparison of two chromosomes was in
+     * the last call to {@code evaluate} than it would have been with
+     * independent games.
+     *
+     * With independent games, the variance of the score difference between
+     * chromosomes i and j in one game is {@code var(i) + var(j)}. When both
+     * played the same sequence it is the variance of the paired differences,
+     * which is what's left once the luck shared by the sequence cancels out.
+     * Both are averaged over every pair of chromosomes, using the identity
+     * {@code sum over i,j of (a_i - a_j)^2 = 2n sum(a^2) - 2 sum(a)^2} per game
+     * so this stays linear in the population size.
+     * @return The independent variance divided by the paired variance; about
+     * 1 for independent games, and higher the more the sequences decide the score.
+     */
+    public double getVarianceReduction() {
+        int n = lastChromosomes;
+        int games = lastGamesPerChromosome;
+        if(n < 2 || games < 2) {
+            return 1;
+        }
+
+        //Only the chromosomes that played every game can be paired up.
+        int complete = 0;
+        for(int i = 0; i < n; i++) {
+            if(gamesPlayed[i] == games) {
+                complete++;
+            }
+        }
+        if(complete < 2) {
+            return 1;
+        }
+
+        double withinSum = 0;
+        double pairedSum = 0;
+        for(int game = 0; game < games; game++) {
+            double sum = 0;
+            double squares = 0;
+            for(int i = 0; i < n; i++) {
+                if(gamesPlayed[i] != games) {
+                    continue;
+                }
+                double residual = lastScores[i * games + game] - getMean(i, games);
+                sum += residual;
+                squares += residual * residual;
+            }
+            withinSum += squares;
+            pairedSum += (2.0 * complete * squares - 2.0 * sum * sum) / ((double)complete * (complete - 1));
+        }
+
+        double independent = 2.0 * withinSum / complete / (games - 1);
+        double paired = pairedSum / (games - 1);
+        return paired == 0 ? 1 : independent / paired;
+    }
+
+    private double getMean(int chromosome, int numberOfGames) {
+        double sum = 0;
+        for(int game = 0; game < gamesPlayed[chromosome]; game++) {
+            sum += lastScores[chromosome * numberOfGames + game];
+        }
+        return sum / gamesPlayed[chromosome];
+    }
+
+    private double getDeviation(int chromosome, int numberOfGames, double mean) {
+        int games = gamesPlayed[chromosome];
+        if(games < 2) {
+            return 0;
+        }
+        double sum = 0;
+        for(int game = 0; game < games; game++) {
+            double difference = lastScores[chromosome * numberOfGames + game] - mean;
+            sum += difference * difference;
+        }
+        return Math.sqrt(sum / (games - 1));
+    }
+
+    /**
+     * Gets the number of games a chromosome played in the last call to
+     * {@code evaluate}.
+     * @param chromosome The index of the chromosome.
+     * @return The number of games.
+     */
+    public int getGamesPlayed(int chromosome) {
+        return gamesPlayed[chromosome];
+    }
+
+    /**
+     * Gets the number of games played by the last call to {@code evaluate}.
+     * @return The number of games.
+     */
+    public long getGames() {
+        return lastGames;
+    }
+
+    /**
+     * Gets how many times fewer games the last call to {@code evaluate}
+     * played than it would have without racing or the cache.
+     * @return The ratio of full games to played games.
+     */
+    public double getRaceCut() {
+        return lastGames == 0 ? 1 : (double)lastChromosomes * lastGamesPerChromosome / lastGames;
+    }
+
+    /**
+     * Gets the number of worker threads.
+     * @return The number of threads.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Gets the number of games per second achieved by the last call to
+     * {@code evaluate}.
+     * @return The games per second.
+     */
+    public double getGamesPerSecond() {
+        return lastNanos == 0 ? 0 : lastGames * 1e9 / lastNanos;
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static GameResult getResult(Future<GameResult> result) {
+        try {
+            return result.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating the population", e);
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("A fitness game failed", e.getCause());
+        }
+    }
+
+    /**
+     * A single fitness game for one chromosome.
+     */
+    private class GameTask implements Callable<GameResult> {
+
+        private final Population population;
+
+        private final int index;
+
+        private final int game;
+
+        private final long seed;
+
+        private final PieceSequence sequence;
+
+        GameTask(Population population, int index, int game, long seed) {
+            this.population = population;
+            this.index = index;
+            this.game = game;
+            this.seed = seed;
+            this.sequence = null;
+        }
+
+        GameTask(Population population, int index, int game, PieceSequence sequence) {
+            this.population = population;
+            this.index = index;
+            this.game = game;
+            this.seed = sequence.getSeed();
+            this.sequence = sequence;
+        }
+
+        @Override
+        public GameResult call() {
+            return playGame(population, index, sequence != null ? sequence : new PieceSequence(randomizer, seed));
+        }
+    }
+
+    /**
+     * All the games of a single submitted chromosome, played one after the
+     * other by the same worker.
+     */
+    private class ChromosomeTask implements Callable<ChromosomeTask> {
+
+        private final Population population;
+
+        private final int index;
+
+        private final FitnessCache.Entry entry;
+
+        private final PieceSequence[] sequences;
+
+        private final long[] seeds;
+
+        private final GameResult[] results;
+
+        ChromosomeTask(Population population, int index, FitnessCache.Entry entry, PieceSequence[] sequences, long[] seeds) {
+            this.population = population;
+            this.index = index;
+            this.entry = entry;
+            this.sequences = sequences;
+            this.seeds = seeds;
+            this.results = new GameResult[sequences != null ? sequences.length : seeds.length];
+        }
+
+        @Override
+        public ChromosomeTask call() {
+            for(int game = 0; game < results.length; game++) {
+                results[game] = playGame(population, index, sequences != null ? sequences[game] : new PieceSequence(randomizer, seeds[game]));
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Plays a game on the calling worker's engine.
+     * @param population The population of the chromosome to play with.
+     * @param chromosome The index of the chromosome.
+     * @param sequence The pieces to play.
+     * @return The outcome of the game.
+     */
+    private GameResult playGame(Population population, int chromosome, PieceSequence sequence) {
+        long start = System.nanoTime();
+        GameEngine engine = engines.get();
+        engine.getEvaluator().setWeights(population, chromosome);
+        engine.playGame(sequence, pieceBudget, scoreCap);
+        GameResult result = new GameResult(engine.getScore(), engine.getLines(), engine.getPieces(), !engine.isGameOver());
+        busyNanos.addAndGet(System.nanoTime() - start);
+        return result;
+    }
+
+}
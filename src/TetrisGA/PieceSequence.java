@@ -0,0 +1,104 @@
+package TetrisGA;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * The {@code PieceSequence} class holds a sequence of pieces drawn from a
+ * seed. The pieces are generated in chunks as games reach them, so a short
+ * game only pays for the pieces it plays and a long one never runs out. The
+ * pieces are stored one byte each and never change once generated, so any
+ * number of games can play the same sequence at once. The same randomizer
+ * and seed always give the same sequence.
+ *
+ */
+public final class PieceSequence {
+
+    /**
+     * The number of pieces generated at a time. It is a multiple of the
+     * number of types, so a bag randomizer deals the same bags as it would
+     * in one go.
+     */
+    static final int CHUNK_LENGTH = 64 * 7;
+
+    /**
+     * The types of piece, indexed by ordinal.
+     */
+    private static final TileType[] TYPES = TileType.values();
+
+    /**
+     * The seed the sequence was generated from.
+     */
+    private final long seed;
+
+    /**
+     * How the pieces are drawn.
+     */
+    private final Randomizer randomizer;
+
+    /**
+     * The generator the next chunk is drawn from, guarded by {@code this}.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * The ordinals of the pieces generated so far, chunk by chunk. A longer
+     * array replaces it whenever a chunk is added, so readers never lock.
+     */
+    private volatile byte[][] chunks = new byte[0][];
+
+    /**
+     * Creates a sequence and generates its first chunk.
+     * @param randomizer How to draw the pieces.
+     * @param seed The seed to draw them with.
+     */
+    public PieceSequence(Randomizer randomizer, long seed) {
+        this.seed = seed;
+        this.randomizer = randomizer;
+        this.random = new SplittableRandom(seed);
+        extend(0);
+    }
+
+    /**
+     * Gets a piece of the sequence, generating it if no game has reached it
+     * yet.
+     * @param index The index of the piece.
+     * @return The piece.
+     */
+    public TileType get(int index) {
+        int chunk = index / CHUNK_LENGTH;
+        byte[][] generated = chunks;
+        if(chunk >= generated.length) {
+            generated = extend(chunk);
+        }
+        return TYPES[generated[chunk][index % CHUNK_LENGTH]];
+    }
+
+    /**
+     * Generates chunks up to and including {@code chunk}.
+     * @param chunk The chunk that is needed.
+     * @return The chunks generated so far.
+     */
+    private synchronized byte[][] extend(int chunk) {
+        byte[][] generated = chunks;
+        if(chunk < generated.length) {
+            return generated;
+        }
+        byte[][] longer = Arrays.copyOf(generated, chunk + 1);
+        for(int i = generated.length; i <= chunk; i++) {
+            longer[i] = new byte[CHUNK_LENGTH];
+            randomizer.fill(longer[i], random);
+        }
+        chunks = longer;
+        return longer;
+    }
+
+    /**
+     * Gets the seed the sequence was generated from.
+     * @return The seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+}
@@ -0,0 +1,188 @@
+package TetrisGA;
+
+import java.util.Arrays;
+
+/**
+ * The {@code Population} class stores a population of chromosomes column by
+ * column: one flat array per gene, and one each for the fitness, the number
+ * of games behind it, their variance and the chromosome's record in the
+ * history. A chromosome is just an index into the columns, so a population
+ * costs 68 bytes per chromosome and no objects, and a pass over one column,
+ * like selection's pass over the fitness, reads memory in order.
+ *
+ */
+public final class Population {
+
+    /**
+     * The number of genes in a chromosome, one weight per feature.
+     */
+    public static final int GENE_COUNT = Evaluator.FEATURE_COUNT;
+
+    /**
+     * The number of chromosomes.
+     */
+    private final int size;
+
+    /**
+     * The genes, indexed by gene and then by chromosome.
+     */
+    private final double[][] genes;
+
+    /**
+     * The average fitness of every chromosome.
+     */
+    private final double[] fitness;
+
+    /**
+     * The number of games the fitness of every chromosome is averaged over.
+     */
+    private final int[] games;
+
+    /**
+     * The variance of the fitness of those games.
+     */
+    private final double[] variance;
+
+    /**
+     * The record of every chromosome in the {@link HistoryStore}, or -1.
+     */
+    private final long[] ids;
+
+    /**
+     * Creates a population with every gene at 0 and nothing evaluated.
+     * @param size The number of chromosomes.
+     */
+    public Population(int size) {
+        this.size = size;
+        this.genes = new double[GENE_COUNT][size];
+        this.fitness = new double[size];
+        this.games = new int[size];
+        this.variance = new double[size];
+        this.ids = new long[size];
+        Arrays.fill(ids, -1);
+    }
+
+    /**
+     * Gets the number of chromosomes.
+     * @return The size.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets a gene of a chromosome.
+     * @param chromosome The index of the chromosome.
+     * @param gene The index of the gene.
+     * @return The value of the gene.
+     */
+    public double getGene(int chromosome, int gene) {
+        return genes[gene][chromosome];
+    }
+
+    /**
+     * Sets a gene of a chromosome. The chromosome keeps its fitness until
+     * {@code clearEvaluation} is called.
+     * @param chromosome The index of the chromosome.
+     * @param gene The index of the gene.
+     * @param value The new value of the gene.
+     */
+    public void setGene(int chromosome, int gene, double value) {
+        genes[gene][chromosome] = value;
+    }
+
+    /**
+     * Copies the genes of a chromosome to an array.
+     * @param chromosome The index of the chromosome.
+     * @param weights The array to copy the genes to, at least {@code GENE_COUNT} long.
+     * @return The array.
+     */
+    public double[] getWeights(int chromosome, double[] weights) {
+        for(int gene = 0; gene < GENE_COUNT; gene++) {
+            weights[gene] = genes[gene][chromosome];
+        }
+        return weights;
+    }
+
+    /**
+     * Gets the average fitness of a chromosome.
+     * @param chromosome The index of the chromosome.
+     * @return The fitness, or 0 if it hasn't been evaluated.
+     */
+    public double getFitness(int chromosome) {
+        return fitness[chromosome];
+    }
+
+    /**
+     * Gets the number of games the fitness of a chromosome is averaged over.
+     * @param chromosome The index of the chromosome.
+     * @return The number of games.
+     */
+    public int getGames(int chromosome) {
+        return games[chromosome];
+    }
+
+    /**
+     * Gets the variance of the fitness of a chromosome's games.
+     * @param chromosome The index of the chromosome.
+     * @return The variance.
+     */
+    public double getVariance(int chromosome) {
+        return variance[chromosome];
+    }
+
+    /**
+     * Records the evaluation of a chromosome.
+     * @param chromosome The index of the chromosome.
+     * @param fitness The average fitness.
+     * @param games The number of games it is averaged over.
+     * @param variance The variance of the fitness of those games.
+     */
+    public void setEvaluation(int chromosome, double fitness, int games, double variance) {
+        this.fitness[chromosome] = fitness;
+        this.games[chromosome] = games;
+        this.variance[chromosome] = variance;
+    }
+
+    /**
+     * Gets the record of a chromosome in the history.
+     * @param chromosome The index of the chromosome.
+     * @return The record, or -1 if it hasn't been recorded.
+     */
+    public long getId(int chromosome) {
+        return ids[chromosome];
+    }
+
+    /**
+     * Sets the record of a chromosome in the history.
+     * @param chromosome The index of the chromosome.
+     * @param id The record, or -1 if it hasn't been recorded.
+     */
+    public void setId(int chromosome, long id) {
+        ids[chromosome] = id;
+    }
+
+    /**
+     * Forgets the evaluation of a chromosome, after its genes have changed.
+     * @param chromosome The index of the chromosome.
+     */
+    public void clearEvaluation(int chromosome) {
+        setEvaluation(chromosome, 0, 0, 0);
+        ids[chromosome] = -1;
+    }
+
+    /**
+     * Copies a chromosome, with its evaluation and record, to another population.
+     * @param chromosome The index of the chromosome.
+     * @param target The population to copy it to, which may be this one.
+     * @param index The index to copy it to.
+     */
+    public void copyTo(int chromosome, Population target, int index) {
+        for(int gene = 0; gene < GENE_COUNT; gene++) {
+            target.genes[gene][index] = genes[gene][chromosome];
+        }
+        target.setEvaluation(index, fitness[chromosome], games[chromosome], variance[chromosome]);
+        target.ids[index] = ids[chromosome];
+    }
+
+}
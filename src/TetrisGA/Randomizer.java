@@ -0,0 +1,62 @@
+package TetrisGA;
+
+import java.util.SplittableRandom;
+
+/**
+ * The {@code Randomizer} enum describes the ways a sequence of pieces can be
+ * drawn.
+ *
+ */
+public enum Randomizer {
+
+    /**
+     * Every piece is drawn independently, with equal odds for every type.
+     */
+    UNIFORM {
+        @Override
+        public void fill(byte[] pieces, SplittableRandom random) {
+            for(int i = 0; i < pieces.length; i++) {
+                pieces[i] = (byte)random.nextInt(TYPE_COUNT);
+            }
+        }
+    },
+
+    /**
+     * The pieces are dealt from a shuffled bag holding one of every type, and
+     * the bag is refilled once it's empty.
+     */
+    BAG {
+        @Override
+        public void fill(byte[] pieces, SplittableRandom random) {
+            byte[] bag = new byte[TYPE_COUNT];
+            for(int i = 0; i < pieces.length; i += TYPE_COUNT) {
+                for(int j = 0; j < TYPE_COUNT; j++) {
+                    bag[j] = (byte)j;
+                }
+                //Fisher-Yates shuffle.
+                for(int j = TYPE_COUNT - 1; j > 0; j--) {
+                    int k = random.nextInt(j + 1);
+                    byte swap = bag[j];
+                    bag[j] = bag[k];
+                    bag[k] = swap;
+                }
+                System.arraycopy(bag, 0, pieces, i, Math.min(TYPE_COUNT, pieces.length - i));
+            }
+        }
+    };
+
+    /**
+     * The number of pieces that exist.
+     */
+    private static final int TYPE_COUNT = TileType.values().length;
+
+    /**
+     * Fills a buffer with piece types, stored as their ordinals. Filling
+     * several buffers whose lengths are multiples of the number of types
+     * from the same generator gives the same pieces as one long buffer.
+     * @param pieces The buffer to fill.
+     * @param random The random number generator to draw from.
+     */
+    public abstract void fill(byte[] pieces, SplittableRandom random);
+
+}
@@ -0,0 +1,64 @@
+package TetrisGA;
+
+import java.util.Random;
+
+/**
+ * The {@code Seeding} enum describes the ways the rest of a first population
+ * can be filled in around elites carried over from earlier runs.
+ *
+ */
+public enum Seeding {
+
+    /**
+     * Every other chromosome is drawn uniformly from the gene range, as if
+     * there were no elites.
+     */
+    UNIFORM {
+        @Override
+        public void fill(Population population, int from, Population elites, int eliteCount,
+                         double geneMin, double geneMax, double sigma, Random random) {
+            for(int i = from; i < population.size(); i++) {
+                for(int gene = 0; gene < Population.GENE_COUNT; gene++) {
+                    population.setGene(i, gene, geneMin + (geneMax - geneMin) * random.nextDouble());
+                }
+                population.clearEvaluation(i);
+            }
+        }
+    },
+
+    /**
+     * Every other chromosome is an elite, taken in turn, with Gaussian noise
+     * of {@code sigma} times the gene range added to every gene, kept inside
+     * the range.
+     */
+    GAUSSIAN {
+        @Override
+        public void fill(Population population, int from, Population elites, int eliteCount,
+                         double geneMin, double geneMax, double sigma, Random random) {
+            double deviation = sigma * (geneMax - geneMin);
+            for(int i = from; i < population.size(); i++) {
+                int elite = (i - from) % eliteCount;
+                for(int gene = 0; gene < Population.GENE_COUNT; gene++) {
+                    double value = elites.getGene(elite, gene) + deviation * random.nextGaussian();
+                    population.setGene(i, gene, Math.max(geneMin, Math.min(geneMax, value)));
+                }
+                population.clearEvaluation(i);
+            }
+        }
+    };
+
+    /**
+     * Fills the chromosomes of a population from {@code from} on.
+     * @param population The population to fill.
+     * @param from The first chromosome to fill.
+     * @param elites The elites to fill around.
+     * @param eliteCount The number of elites, at least 1.
+     * @param geneMin The lowest value of a gene.
+     * @param geneMax The highest value of a gene.
+     * @param sigma The standard deviation of the noise, as a share of the gene range.
+     * @param random The random number generator to draw from.
+     */
+    public abstract void fill(Population population, int from, Population elites, int eliteCount,
+                              double geneMin, double geneMax, double sigma, Random random);
+
+}
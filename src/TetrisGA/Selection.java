@@ -0,0 +1,159 @@
+package TetrisGA;
+
+import java.util.Random;
+
+/**
+ * The {@code Selection} enum describes the ways the parents of the next
+ * population can be picked. Every way reads the fitness of the chromosomes
+ * without changing it, copies the parents out, and takes at most O(n log n)
+ * time for a population of n.
+ *
+ */
+public enum Selection {
+
+    /**
+     * The best chromosomes become the parents, best first.
+     */
+    TRUNCATION {
+        @Override
+        public void select(Population population, Population parents, int count, Random random) {
+            int[] best = getTop(population, count);
+            for(int i = 0; i < count; i++) {
+                population.copyTo(best[i], parents, i);
+            }
+        }
+    },
+
+    /**
+     * Every parent is the best of {@code TOURNAMENT_SIZE} chromosomes drawn
+     * at random.
+     */
+    TOURNAMENT {
+        @Override
+        public void select(Population population, Population parents, int count, Random random) {
+            for(int i = 0; i < count; i++) {
+                int winner = random.nextInt(population.size());
+                for(int round = 1; round < TOURNAMENT_SIZE; round++) {
+                    int challenger = random.nextInt(population.size());
+                    if(population.getFitness(challenger) > population.getFitness(winner)) {
+                        winner = challenger;
+                    }
+                }
+                population.copyTo(winner, parents, i);
+            }
+        }
+    },
+
+    /**
+     * Every parent is drawn with odds proportional to its rank, 1 for the
+     * worst chromosome and n for the best. Unlike odds proportional to the
+     * fitness, this doesn't care how far apart or below zero the scores are.
+     */
+    RANK {
+        @Override
+        public void select(Population population, Population parents, int count, Random random) {
+            int n = population.size();
+            int[] ranked = getTop(population, n);
+            double total = n * (n + 1.0) / 2;
+            for(int i = 0; i < count; i++) {
+                //The rank r with r(r-1)/2 <= u < r(r+1)/2, from the quadratic formula.
+                double u = random.nextDouble() * total;
+                int rank = (int)Math.ceil((Math.sqrt(8 * u + 1) - 1) / 2);
+                rank = Math.max(1, Math.min(n, rank));
+                population.copyTo(ranked[n - rank], parents, i);
+            }
+        }
+    };
+
+    /**
+     * The number of chromosomes in every tournament.
+     */
+    public static final int TOURNAMENT_SIZE = 3;
+
+    /**
+     * Picks {@code count} parents and copies them to the start of {@code parents}.
+     * @param population The chromosomes to pick from.
+     * @param parents The population to copy the parents to.
+     * @param count The number of parents to pick.
+     * @param random The random number generator to draw from.
+     */
+    public abstract void select(Population population, Population parents, int count, Random random);
+
+    /**
+     * Finds the {@code count} fittest chromosomes in a single pass, keeping
+     * the best ones seen so far in a min-heap with the weakest on top. Ties
+     * go to the chromosome that comes first.
+     * @param population The chromosomes.
+     * @param count The number of chromosomes to find.
+     * @return Their indexes, best first.
+     */
+    public static int[] getTop(Population population, int count) {
+        count = Math.min(count, population.size());
+        int[] heap = new int[count];
+        int size = 0;
+        for(int i = 0; i < population.size(); i++) {
+            if(size < count) {
+                heap[size] = i;
+                siftUp(population, heap, size++);
+            } else if(isWorse(population, heap[0], i)) {
+                heap[0] = i;
+                siftDown(population, heap, 0, size);
+            }
+        }
+
+        //Take the weakest off the top until the heap is empty, filling the array from the back.
+        for(int end = size - 1; end > 0; end--) {
+            int weakest = heap[0];
+            heap[0] = heap[end];
+            heap[end] = weakest;
+            siftDown(population, heap, 0, end);
+        }
+        return heap;
+    }
+
+    /**
+     * Checks whether chromosome a ranks below chromosome b.
+     */
+    private static boolean isWorse(Population population, int a, int b) {
+        double fitnessA = population.getFitness(a);
+        double fitnessB = population.getFitness(b);
+        return fitnessA < fitnessB || (fitnessA == fitnessB && a > b);
+    }
+
+    private static void siftUp(Population population, int[] heap, int index) {
+        while(index > 0) {
+            int parent = (index - 1) / 2;
+            if(!isWorse(population, heap[index], heap[parent])) {
+                return;
+            }
+            swap(heap, index, parent);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(Population population, int[] heap, int index, int size) {
+        while(true) {
+            int weakest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if(left < size && isWorse(population, heap[left], heap[weakest])) {
+                weakest = left;
+            }
+            if(right < size && isWorse(population, heap[right], heap[weakest])) {
+                weakest = right;
+            }
+            if(weakest == index) {
+                return;
+            }
+            swap(heap, index, weakest);
+            index = weakest;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int swap = heap[a];
+        heap[a] = heap[b];
+        heap[b] = swap;
+    }
+
+}
@@ -0,0 +1,112 @@
+package TetrisGA;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * The {@code StatefulRandom} class is a {@link Random} whose state can be
+ * saved and restored as plain numbers, so a checkpoint doesn't need Java
+ * serialization to carry on breeding where it stopped.
+ *
+ * It is the linear congruential generator {@code Random} documents, down to
+ * {@code nextGaussian}, so a run draws exactly the same numbers as with a
+ * {@code Random} of the same seed.
+ *
+ */
+public class StatefulRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+
+    private static final long ADDEND = 0xBL;
+
+    private static final long MASK = (1L << 48) - 1;
+
+    /**
+     * The 48 bits of the generator. Not initialised here, since the
+     * constructor of {@code Random} sets it through {@code setSeed} first.
+     */
+    private long state;
+
+    private boolean haveNextNextGaussian;
+
+    private double nextNextGaussian;
+
+    /**
+     * Creates a generator that draws the same numbers as {@code new Random(seed)}.
+     * @param seed The seed.
+     */
+    public StatefulRandom(long seed) {
+        super(seed);
+    }
+
+    /**
+     * Creates a generator in a saved state.
+     * @param state The 48 bits of the generator.
+     * @param haveNextNextGaussian Whether a Gaussian value is held back.
+     * @param nextNextGaussian The Gaussian value held back.
+     */
+    StatefulRandom(long state, boolean haveNextNextGaussian, double nextNextGaussian) {
+        super(0);
+        this.state = state & MASK;
+        this.haveNextNextGaussian = haveNextNextGaussian;
+        this.nextNextGaussian = nextNextGaussian;
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        state = (seed ^ MULTIPLIER) & MASK;
+        haveNextNextGaussian = false;
+    }
+
+    @Override
+    protected synchronized int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int)(state >>> (48 - bits));
+    }
+
+    @Override
+    public synchronized double nextGaussian() {
+        if(haveNextNextGaussian) {
+            haveNextNextGaussian = false;
+            return nextNextGaussian;
+        }
+        double v1, v2, s;
+        do {
+            v1 = 2 * nextDouble() - 1;
+            v2 = 2 * nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while(s >= 1 || s == 0);
+        double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+        nextNextGaussian = v2 * multiplier;
+        haveNextNextGaussian = true;
+        return v1 * multiplier;
+    }
+
+    /**
+     * Writes the state of the generator.
+     * @param out The stream to write to.
+     * @throws IOException If the stream can't be written.
+     */
+    public synchronized void write(DataOutputStream out) throws IOException {
+        out.writeLong(state);
+        out.writeBoolean(haveNextNextGaussian);
+        out.writeDouble(nextNextGaussian);
+    }
+
+    /**
+     * Reads a generator written by {@code write}.
+     * @param in The stream to read from.
+     * @return The generator, in the state it was written in.
+     * @throws IOException If the stream can't be read.
+     */
+    public static StatefulRandom read(DataInputStream in) throws IOException {
+        long state = in.readLong();
+        boolean haveNextNextGaussian = in.readBoolean();
+        return new StatefulRandom(state, haveNextNextGaussian, in.readDouble());
+    }
+
+}
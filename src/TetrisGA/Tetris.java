@@ -3,13 +3,11 @@ package TetrisGA;
 import java.awt.BorderLayout;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.util.Random;
-import java.util.Scanner;
 import javax.swing.JFrame;
 
 
 /**
- * The {@code Tetris} class is responsible for handling much of the game logic and
+ * The {@code Tetris} class is responsible for showing a {@link GameEngine} and
  * reading user input.
  * @author Brendan Jones
  *
@@ -18,28 +16,16 @@ public class Tetris extends JFrame {
     /**
      *
      *
-     *  BoardPanel.heightWeight = manualChromosome[0];
-     BoardPanel.linesWeight = manualChromosome[1];
-     BoardPanel.holesWeight = manualChromosome[2];
-     BoardPanel.bumbinesWeight = manualChromosome[3];
-     BoardPanel.blockadesWeight = manualChromosome[4];
+     *  heightWeight = manualChromosome[0];
+     linesWeight = manualChromosome[1];
+     holesWeight = manualChromosome[2];
+     bumbinesWeight = manualChromosome[3];
+     blockadesWeight = manualChromosome[4];
      *
      *
      */
 
-    private double[] manualChromosome={-2.841884818353364 ,90.33398858013996 ,-86.29884523976246, -17.97583422646018, -3.496915438232847 ,0};
-
-
-    private boolean geneticMode=false;
-    private int bestRotation;
-    private int bestXpos;
-    private double bestPoints;
-
-    private int ghostRow;
-    boolean testMode = false;
-
-    private int gamesCounter = geneticOperations.numberOfGames;
-    private int chromosomeCounter=geneticOperations.populationSize;
+    private double[] manualChromosome;
 
 
     /**
@@ -54,9 +40,9 @@ public class Tetris extends JFrame {
     private static final long FRAME_TIME = 500L / 30L;
 
     /**
-     * The number of pieces that exist.
+     * The engine running the game that is shown.
      */
-    private static final int TYPE_COUNT = TileType.values().length;
+    private GameEngine engine;
 
     /**
      * The BoardPanel instance.
@@ -79,52 +65,11 @@ public class Tetris extends JFrame {
      */
     private boolean isNewGame;
 
-    /**
-     * Whether or not the game is over.
-     */
-    private boolean isGameOver;
-
-    /**
-     * The current score.
-     */
-    private int score;
-
-    /**
-     * The random number generator. This is used to
-     * spit out pieces randomly.
-     */
-    private Random random;
-
     /**
      * The clock that handles the update logic.
      */
     private static Clock logicTimer;
 
-    /**
-     * The current type of tile.
-     */
-    private TileType currentType;
-
-    /**
-     * The next type of tile.
-     */
-    private TileType nextType;
-
-    /**
-     * The current column of our tile.
-     */
-    private int currentCol;
-
-    /**
-     * The current row of our tile.
-     */
-    private int currentRow;
-
-    /**
-     * The current rotation of our tile.
-     */
-    private int currentRotation;
-
     /**
      * Ensures that a certain amount of time passes after a piece is
      * spawned before we can drop it.
@@ -136,11 +81,19 @@ public class Tetris extends JFrame {
      */
     private static float gameSpeed;
 
+    /**
+     * Creates a new Tetris instance playing the default chromosome.
+     */
+    public Tetris() {
+        this(new Config());
+    }
+
     /**
      * Creates a new Tetris instance. Sets up the window's properties,
      * and adds a controller listener.
+     * @param config The settings, of which {@code manualChromosome} is played.
      */
-    public Tetris() {
+    public Tetris(Config config) {
 		/*
 		 * Set the basic properties of the window.
 		 */
@@ -152,9 +105,15 @@ public class Tetris extends JFrame {
 
 
 		/*
-		 * Initialize the BoardPanel and SidePanel instances.
+		 * Initialize the engine, and the BoardPanel and SidePanel instances showing it.
 		 */
 
+        manualChromosome = config.getDoubles("manualChromosome");
+        if(manualChromosome.length != Evaluator.FEATURE_COUNT) {
+            throw new IllegalArgumentException("manualChromosome needs " + Evaluator.FEATURE_COUNT + " weights but has "
+                    + manualChromosome.length);
+        }
+        engine = new GameEngine(new Evaluator(manualChromosome), true);
         board = new BoardPanel(this);
         side = new SidePanel(this);
 
@@ -185,16 +144,7 @@ public class Tetris extends JFrame {
                     case KeyEvent.VK_S:
                         if(!isPaused && dropCooldown == 0) {
                             logicTimer.setCyclesPerSecond(250.0f);
-                            boolean notOnBottom=true;
-                            while(notOnBottom)
-                            {
-                                if(board.isValidAndEmpty(currentType, currentCol, currentRow + 1, currentRotation)) {
-                                    //Increment the current row if it's safe to do so.
-                                    currentRow++;
-                                } else {
-                                notOnBottom=false;
-                                }
-                            }
+                            engine.hardDrop();
 
                         }
                         break;
@@ -205,10 +155,8 @@ public class Tetris extends JFrame {
 				 * position is valid. If so, we decrement the current column by 1.
 				 */
                     case KeyEvent.VK_A:
-                        if(!isPaused && board.isValidAndEmpty(currentType, currentCol - 1, currentRow, currentRotation)) {
-                            currentCol--;
-
-
+                        if(!isPaused) {
+                            engine.moveLeft();
                         }
                         break;
 
@@ -218,8 +166,8 @@ public class Tetris extends JFrame {
 				 * position is valid. If so, we increment the current column by 1.
 				 */
                     case KeyEvent.VK_D:
-                        if(!isPaused && board.isValidAndEmpty(currentType, currentCol + 1, currentRow, currentRotation)) {
-                            currentCol++;
+                        if(!isPaused) {
+                            engine.moveRight();
                         }
                         break;
 
@@ -231,7 +179,7 @@ public class Tetris extends JFrame {
 				 */
                     case KeyEvent.VK_Q:
                         if(!isPaused) {
-                            rotatePiece((currentRotation == 0) ? 3 : currentRotation - 1);
+                            engine.rotatePiece((engine.getPieceRotation() == 0) ? 3 : engine.getPieceRotation() - 1);
                         }
                         break;
 
@@ -243,7 +191,7 @@ public class Tetris extends JFrame {
 				 */
                     case KeyEvent.VK_E:
                         if(!isPaused) {
-                            rotatePiece((currentRotation == 3) ? 0 : currentRotation + 1);
+                            engine.rotatePiece((engine.getPieceRotation() == 3) ? 0 : engine.getPieceRotation() + 1);
                         }
                         break;
 
@@ -255,7 +203,7 @@ public class Tetris extends JFrame {
 				 * minute or so.
 				 */
                     case KeyEvent.VK_P:
-                        if(!isGameOver && !isNewGame) {
+                        if(!engine.isGameOver() && !isNewGame) {
                             isPaused = !isPaused;
                             logicTimer.setPaused(isPaused);
                         }
@@ -266,8 +214,8 @@ public class Tetris extends JFrame {
 				 * game state. If so, reset the game.
 				 */
                     case KeyEvent.VK_ENTER:
-                        if(isGameOver || isNewGame) {
-                            resetGame(0);
+                        if(engine.isGameOver() || isNewGame) {
+                            resetGame();
                         }
                         break;
 
@@ -308,17 +256,9 @@ public class Tetris extends JFrame {
      */
     private  void startGame() {
 		/*
-		 * Initialize our random number generator, logic timer, and new game variables.
+		 * Initialize our logic timer, and new game variables.
 		 */
 
-		if(geneticMode){geneticOperations.generateFirstPopulation();}else {
-            BoardPanel.heightWeight = manualChromosome[0];
-            BoardPanel.linesWeight = manualChromosome[1];
-            BoardPanel.holesWeight = manualChromosome[2];
-            BoardPanel.bumbinesWeight = manualChromosome[3];
-            BoardPanel.blockadesWeight = manualChromosome[4];
-        }
-        this.random = new Random();
         this.isNewGame = true;
         this.gameSpeed = 999f;
 
@@ -379,25 +319,15 @@ public class Tetris extends JFrame {
 		 * Check to see if the piece's position can move down to the next row.
 		 */
 
-        if(board.isValidAndEmpty(currentType, currentCol, currentRow + 1, currentRotation)) {
+        if(engine.getBoard().isValidAndEmpty(engine.getPieceType(), engine.getPieceCol(), engine.getPieceRow() + 1, engine.getPieceRotation())) {
             //Increment the current row if it's safe to do so.
            //currentRow++;
         } else {
 			/*
 			 * We've either reached the bottom of the board, or landed on another piece, so
-			 * we need to add the piece to the board.
+			 * we need to add the piece to the board, clear any lines and spawn the next piece.
 			 */
-            board.addPiece(currentType, currentCol, currentRow, currentRotation);
-
-			/*
-			 * Check to see if adding the new piece resulted in any cleared lines. If so,
-			 * increase the player's score. (Up to 4 lines can be cleared in a single go;
-			 * [1 = 100pts, 2 = 200pts, 3 = 400pts, 4 = 800pts]).
-			 */
-            int cleared = board.checkLines();
-            if(cleared > 0) {
-                score += 50 << cleared;
-            }
+            engine.lockPiece();
 
 			/*
 			 * Increase the speed slightly for the next piece and update the game's timer
@@ -413,15 +343,12 @@ public class Tetris extends JFrame {
 			 */
             dropCooldown = 0;
 
-			/*
-			 * Update the difficulty level. This has no effect on the game, and is only
-			 * used in the "Level" string in the SidePanel.
-			 */
-
-			/*
-			 * Spawn a new piece to control.
-			 */
-            spawnPiece();
+            if(engine.isGameOver()) {
+                System.out.println("Score: " + getScore());
+                resetGame();
+            } else {
+                placePiece();
+            }
         }
     }
 
@@ -446,293 +373,33 @@ public class Tetris extends JFrame {
      * Resets the game variables to their default values at the start
      * of a new game.
      */
-    private void resetGame(int geneNumber) {
-
-
-
-        //this.gameSpeed = 3.0f;
-        this.nextType = TileType.values()[random.nextInt(TYPE_COUNT)];
+    private void resetGame() {
         this.isNewGame = false;
-        this.isGameOver = false;
-        board.clear();
+        engine.reset();
         logicTimer.reset();
         logicTimer.setCyclesPerSecond(gameSpeed);
-
-
-
-        if(geneticMode) {
-            geneticOperations.chromosome[geneticOperations.currentChromosome][5] += score;
-            BoardPanel.heightWeight = geneticOperations.chromosome[geneNumber][0];
-            BoardPanel.linesWeight = geneticOperations.chromosome[geneNumber][1];
-            BoardPanel.holesWeight = geneticOperations.chromosome[geneNumber][2];
-            BoardPanel.bumbinesWeight = geneticOperations.chromosome[geneNumber][3];
-            BoardPanel.blockadesWeight = geneticOperations.chromosome[geneNumber][4];
-        } else {
-            BoardPanel.heightWeight = manualChromosome[0];
-            BoardPanel.linesWeight = manualChromosome[1];
-            BoardPanel.holesWeight = manualChromosome[2];
-            BoardPanel.bumbinesWeight = manualChromosome[3];
-            BoardPanel.blockadesWeight = manualChromosome[4];
-        }
-        this.score = 0;
-            spawnPiece();
+        placePiece();
     }
 
     /**
-     * Spawns a new piece and resets our piece's variables to their default
-     * values.
+     * Lets the engine pick a placement for the freshly spawned piece and
+     * drops it there.
      */
-    private void spawnPiece() {
-		/*
-		 * Poll the last piece and reset our position and rotation to
-		 * their default variables, then pick the next piece to use.
-		 */
-        this.currentType = nextType;
-/////       ///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-        // sprawdzanie czy klocek moze byc normalnie wygenerowany
-        // jak nie to konczy gre. jak tak to konczy generowanie klocka i odpala bruta
-        for(int c=0;c<10;c++){
-            if(BoardPanel.tablica[4][c]!=0) {
-
-                for(int i = 0; i < 10; i++){
-                    for(int j = 0; j < 21; j++) {
-                    BoardPanel.tablica[j][i]=0;
-                    }}
-
-                this.isGameOver = true;
-                logicTimer.setPaused(true);
-
-                //System.out.println("score: "+ getScore() + "genes " + BoardPanel.linesWeight );
-               // startGame();
-                if(geneticMode) {
-                    if (chromosomeCounter == 1) {
-                        gamesCounter = geneticOperations.numberOfGames;
-                        geneticOperations.getNewPopulation();
-                        gamesCounter=geneticOperations.numberOfGames;
-                        chromosomeCounter=geneticOperations.populationSize;
-                        geneticOperations.currentChromosome=0;
-                    } else if (gamesCounter == 0) {
-                        geneticOperations.chromosome[geneticOperations.currentChromosome][5] /= geneticOperations.numberOfGames;
-                        System.out.println( "Score: " + String.format("%.0f", geneticOperations.chromosome[geneticOperations.currentChromosome][5]));
-                        geneticOperations.currentChromosome++;
-                        gamesCounter = geneticOperations.numberOfGames;
-                        chromosomeCounter--;
-                    }
-                    resetGame(geneticOperations.currentChromosome);
-                    gamesCounter--;
-                }else {
-                    System.out.println("Score: " + getScore());
-                    resetGame(0);
-                }
-            }
-        }
-        ///////////////////////////////////////////////////////////////////////////////////////////////////////
-        this.currentCol = currentType.getSpawnColumn();
-        this.currentRow = currentType.getSpawnRow();
-        this.currentRotation = 0;
-        this.nextType = TileType.values()[random.nextInt(TYPE_COUNT)];
-		/*
-		 * If the spawn point is invalid, we need to pause the game and flag that we've lost
-		 * because it means that the pieces on the board have gotten too high.
-         */
-        bestPoints=-999999999;
-        bestRotation=0;
-        bestXpos=0;
-        bruteForce();
+    private void placePiece() {
+        engine.bruteForce();
 
         if(!isPaused && dropCooldown == 0) {
             logicTimer.setCyclesPerSecond(1.0f);
-            boolean notOnBottom=true;
-            while(notOnBottom)
-            {
-                if(board.isValidAndEmpty(currentType, currentCol, currentRow + 1, currentRotation)) {
-                    //Increment the current row if it's safe to do so.
-                    currentRow++;
-                } else {
-                    notOnBottom=false;
-                }
-            }
-        }
-    }
-
-/////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-    /**
-     * Attempts to move piece to every possible column with every possible rotation.
-     */
-private boolean canMoveRight(){
-
-    if(!isPaused && board.isValidAndEmpty(currentType, currentCol + 1, currentRow, currentRotation)) {
-
-        return true;
-    }else {return false;
-    }
-}
-
-    private boolean canMoveDown(){
-
-        if(!isPaused && board.isValidAndEmpty(currentType, currentCol , ghostRow, currentRotation)) {
-
-            return true;
-        }else {return false;
-        }
-    }
-
-    private boolean canMoveLeft(){
-
-        if(!isPaused && board.isValidAndEmpty(currentType, currentCol-1 , currentRow, currentRotation)) {
-
-            return true;
-        }else {return false;
+            engine.hardDrop();
         }
     }
 
-
-private void bruteForce() {
-
-    if(testMode == true) {
-        for (int i=0; i<100;i++){
-            if(testMode == true) System.out.println();}
-    }
-
-    for (int Rotacje = 0; Rotacje < 4; Rotacje++) {
-        if(testMode == true)  System.out.println("rotated" + currentRotation);
-        currentRotation = Rotacje;
-        while(canMoveLeft()){currentCol-=1;}
-        currentCol-=1;
-        while (canMoveRight()) {
-            if(testMode == true)  System.out.println("==================================================" );
-            if(testMode == true)  System.out.println("==================================================" );
-            if(testMode == true)  System.out.println("==================================================" );
-
-            currentCol++;
-
-            if(testMode == true) System.out.println("moved right" + currentCol + " rota " + currentRotation);
-
-            for (int x = 0; x < BoardPanel.COL_COUNT; x++) {
-
-                for (int y = BoardPanel.HIDDEN_ROW_COUNT; y < BoardPanel.ROW_COUNT; y++) {
-                    TileType tile = BoardPanel.getTile(x, y);
-                    if (tile != null) {
-
-                        //dodanie do tablicy normalnych klockow
-                        BoardPanel.tablica[y][x] = 1;
-                        //System.out.print(tablica[x][y] + " ");
-
-                    } else {
-                        //wpisanie do tablicy zer jezeli nie ma klocka
-                        BoardPanel.tablica[y][x] = 0;
-
-
-                    }
-                }
-            }
-            if(testMode == true) System.out.println("dopisalem klocki " + currentRow );
-            if(testMode == true)  System.out.println("dimenszyn  " + BoardPanel.ghostX);
-
-            ghostRow=0;
-            while(canMoveDown()){
-                ghostRow+=1;
-
-            }
-            if(testMode == true) System.out.println("ROW  " + ghostRow);
-            for(int col = 0; col < currentType.getDimension(); col++) {
-                for(int row = 0; row < currentType.getDimension(); row++) {
-
-
-                    if( currentType.isTile(col, row, currentRotation)) {
-
-// dopisanie do tablicy ghost klockow
-                        //                 row / col
-                        BoardPanel.tablica[ghostRow -1 + row][currentCol+col] = 2;
-                    }
-                }
-            }
-
-                for (int y = BoardPanel.HIDDEN_ROW_COUNT; y < BoardPanel.ROW_COUNT; y++) {
-                    for (int x = 0; x < BoardPanel.COL_COUNT; x++) {
-
-                        if(testMode == true)    System.out.print(BoardPanel.tablica[y][x] + " ");
-
-                    }
-                    if(testMode == true) System.out.println();
-                }
-
-            if(testMode == true)   {
-                System.out.println("punkty dla tego ruchu : "+ BoardPanel.calculatePoints(BoardPanel.tablica) );
-                System.out.println("==================================================================================" );
-                System.out.println("old points "+bestPoints);
-            }
-
-                if(BoardPanel.calculatePoints(BoardPanel.tablica)>bestPoints){
-                   bestPoints=BoardPanel.calculatePoints(BoardPanel.tablica);
-                   bestXpos=currentCol;
-                   bestRotation=currentRotation;
-
-
-                }
-            if(testMode == true)System.out.println("new points "+bestPoints);
-            }
-        }
-        currentCol=bestXpos;
-        currentRotation=bestRotation;
- if(testMode == true)       System.out.println("finished, best x="+ bestXpos + "best rota=" + bestRotation);
-
-
-}
-
-////////////////////////////////////////////////////////////////////////////////////////////////////////////
-
     /**
-     * Attempts to set the rotation of the current piece to newRotation.
-     * @param newRotation The rotation of the new peice.
+     * Gets the board of the game that is shown.
+     * @return The board.
      */
-    private void rotatePiece(int newRotation) {
-		/*
-		 * Sometimes pieces will need to be moved when rotated to avoid clipping
-		 * out of the board (the I piece is a good example of this). Here we store
-		 * a temporary row and column in case we need to move the tile as well.
-		 */
-        int newColumn = currentCol;
-        int newRow = currentRow;
-
-		/*
-		 * Get the insets for each of the sides. These are used to determine how
-		 * many empty rows or columns there are on a given side.
-		 */
-        int left = currentType.getLeftInset(newRotation);
-        int right = currentType.getRightInset(newRotation);
-        int top = currentType.getTopInset(newRotation);
-        int bottom = currentType.getBottomInset(newRotation);
-
-		/*
-		 * If the current piece is too far to the left or right, move the piece away from the edges
-		 * so that the piece doesn't clip out of the map and automatically become invalid.
-		 */
-        if(currentCol < -left) {
-            newColumn -= currentCol - left;
-        } else if(currentCol + currentType.getDimension() - right >= BoardPanel.COL_COUNT) {
-            newColumn -= (currentCol + currentType.getDimension() - right) - BoardPanel.COL_COUNT + 1;
-        }
-
-		/*
-		 * If the current piece is too far to the top or bottom, move the piece away from the edges
-		 * so that the piece doesn't clip out of the map and automatically become invalid.
-		 */
-        if(currentRow < -top) {
-            newRow -= currentRow - top;
-        } else if(currentRow + currentType.getDimension() - bottom >= BoardPanel.ROW_COUNT) {
-            newRow -= (currentRow + currentType.getDimension() - bottom) - BoardPanel.ROW_COUNT + 1;
-        }
-
-		/*
-		 * Check to see if the new position is acceptable. If it is, update the rotation and
-		 * position of the piece.
-		 */
-        if(board.isValidAndEmpty(currentType, newColumn, newRow, newRotation)) {
-            currentRotation = newRotation;
-            currentRow = newRow;
-            currentCol = newColumn;
-        }
+    public Board getBoard() {
+        return engine.getBoard();
     }
 
     /**
@@ -748,7 +415,7 @@ private void bruteForce() {
      * @return Whether or not the game is over.
      */
     public boolean isGameOver() {
-        return isGameOver;
+        return engine.isGameOver();
     }
 
     /**
@@ -764,7 +431,7 @@ private void bruteForce() {
      * @return The score.
      */
     public int getScore() {
-        return score;
+        return engine.getScore();
     }
 
     /**
@@ -772,7 +439,7 @@ private void bruteForce() {
      * @return The piece type.
      */
     public TileType getPieceType() {
-        return currentType;
+        return engine.getPieceType();
     }
 
     /**
@@ -780,7 +447,7 @@ private void bruteForce() {
      * @return The next piece.
      */
     public TileType getNextPieceType() {
-        return nextType;
+        return engine.getNextPieceType();
     }
 
     /**
@@ -788,7 +455,7 @@ private void bruteForce() {
      * @return The column.
      */
     public int getPieceCol() {
-        return currentCol;
+        return engine.getPieceCol();
     }
 
     /**
@@ -796,7 +463,7 @@ private void bruteForce() {
      * @return The row.
      */
     public int getPieceRow() {
-        return currentRow;
+        return engine.getPieceRow();
     }
 
     /**
@@ -804,16 +471,21 @@ private void bruteForce() {
      * @return The rotation.
      */
     public int getPieceRotation() {
-        return currentRotation;
+        return engine.getPieceRotation();
     }
 
     /**
      * Entry-point of the game. Responsible for creating and starting a new
-     * game instance.
-     * @param args Unused.
+     * game instance, or training headless with {@code --geneticMode}.
+     * @param args The flags, see {@link Config}.
      */
     public static void main(String[] args)  throws Exception {
-        Tetris tetris = new Tetris();
+        Config config = Config.parse(args);
+        if(config.getBoolean("geneticMode")) {
+            new geneticOperations(config).run();
+            return;
+        }
+        Tetris tetris = new Tetris(config);
         tetris.startGame();
 
     }
@@ -1,6 +1,7 @@
 package TetrisGA;
 
 import java.awt.Color;
+import java.util.Arrays;
 
 /**
  * The {@code PieceType} enum describes the properties of the various pieces that can be used in the game.
@@ -12,7 +13,7 @@ public enum TileType {
     /**
      * Piece TypeI.
      */
-    TypeI(new Color(BoardPanel.COLOR_MIN, BoardPanel.COLOR_MAX, BoardPanel.COLOR_MAX), 4, 4, 1, new boolean[][] {
+    TypeI(BoardPanel.COLOR_MIN, BoardPanel.COLOR_MAX, BoardPanel.COLOR_MAX, 4, 4, 1, new boolean[][] {
             {
                     false,	false,	false,	false,
                     true,	true,	true,	true,
@@ -42,7 +43,7 @@ public enum TileType {
     /**
      * Piece TypeJ.
      */
-    TypeJ(new Color(BoardPanel.COLOR_MIN, BoardPanel.COLOR_MIN, BoardPanel.COLOR_MAX), 3, 3, 2, new boolean[][] {
+    TypeJ(BoardPanel.COLOR_MIN, BoardPanel.COLOR_MIN, BoardPanel.COLOR_MAX, 3, 3, 2, new boolean[][] {
             {
                     true,	false,	false,
                     true,	true,	true,
@@ -68,7 +69,7 @@ public enum TileType {
     /**
      * Piece TypeL.
      */
-    TypeL(new Color(BoardPanel.COLOR_MAX, 127, BoardPanel.COLOR_MIN), 3, 3, 2, new boolean[][] {
+    TypeL(BoardPanel.COLOR_MAX, 127, BoardPanel.COLOR_MIN, 3, 3, 2, new boolean[][] {
             {
                     false,	false,	true,
                     true,	true,	true,
@@ -94,7 +95,7 @@ public enum TileType {
     /**
      * Piece TypeO.
      */
-    TypeO(new Color(BoardPanel.COLOR_MAX, BoardPanel.COLOR_MAX, BoardPanel.COLOR_MIN), 2, 2, 2, new boolean[][] {
+    TypeO(BoardPanel.COLOR_MAX, BoardPanel.COLOR_MAX, BoardPanel.COLOR_MIN, 2, 2, 2, new boolean[][] {
             {
                     true,	true,
                     true,	true,
@@ -116,7 +117,7 @@ public enum TileType {
     /**
      * Piece TypeS.
      */
-    TypeS(new Color(BoardPanel.COLOR_MIN, BoardPanel.COLOR_MAX, BoardPanel.COLOR_MIN), 3, 3, 2, new boolean[][] {
+    TypeS(BoardPanel.COLOR_MIN, BoardPanel.COLOR_MAX, BoardPanel.COLOR_MIN, 3, 3, 2, new boolean[][] {
             {
                     false,	true,	true,
                     true,	true,	false,
@@ -142,7 +143,7 @@ public enum TileType {
     /**
      * Piece TypeT.
      */
-    TypeT(new Color(128, BoardPanel.COLOR_MIN, 128), 3, 3, 2, new boolean[][] {
+    TypeT(128, BoardPanel.COLOR_MIN, 128, 3, 3, 2, new boolean[][] {
             {
                     false,	true,	false,
                     true,	true,	true,
@@ -168,7 +169,7 @@ public enum TileType {
     /**
      * Piece TypeZ.
      */
-    TypeZ(new Color(BoardPanel.COLOR_MAX, BoardPanel.COLOR_MIN, BoardPanel.COLOR_MIN), 3, 3, 2, new boolean[][] {
+    TypeZ(BoardPanel.COLOR_MAX, BoardPanel.COLOR_MIN, BoardPanel.COLOR_MIN, 3, 3, 2, new boolean[][] {
             {
                     true,	true,	false,
                     false,	true,	true,
@@ -192,7 +193,13 @@ public enum TileType {
     });
 
     /**
-     * The base color of tiles of this type.
+     * The red, green and blue components of the base color of tiles of this type.
+     */
+    private int red, green, blue;
+
+    /**
+     * The base color of tiles of this type. The colors are only created once
+     * something draws the tile, so headless games never load AWT.
      */
     private Color baseColor;
 
@@ -240,32 +247,130 @@ public enum TileType {
      */
     private boolean[][] tiles;
 
+    /**
+     * The row masks for each rotation. Bit {@code x} of {@code rowMasks[rotation][y]}
+     * is set when the piece has a tile in column {@code x} of row {@code y}.
+     */
+    private int[][] rowMasks;
+
+    /**
+     * The placement table. For every rotation this holds the insets, the
+     * range of legal columns and, for every column of the piece, the highest
+     * and lowest rows with a tile in them. It is built once, so nothing has to rescan the
+     * tiles while searching for a placement.
+     */
+    private int[] leftInsets, rightInsets, topInsets, bottomInsets;
+    private int[] minColumns, maxColumns;
+    private int[][] topProfiles, bottomProfiles;
+
+    /**
+     * The rotations that give a different shape.
+     */
+    private int[] distinctRotations;
+
     /**
      * Creates a new TileType.
-     * @param color The base color of the tile.
+     * @param red The red component of the base color of the tile.
+     * @param green The green component of the base color of the tile.
+     * @param blue The blue component of the base color of the tile.
      * @param dimension The dimensions of the tiles array.
      * @param cols The number of columns.
      * @param rows The number of rows.
      * @param tiles The tiles.
      */
-    private TileType(Color color, int dimension, int cols, int rows, boolean[][] tiles) {
-        this.baseColor = color;
-        this.lightColor = color.brighter();
-        this.darkColor = color.darker();
+    private TileType(int red, int green, int blue, int dimension, int cols, int rows, boolean[][] tiles) {
+        this.red = red;
+        this.green = green;
+        this.blue = blue;
         this.dimension = dimension;
         this.tiles = tiles;
         this.cols = cols;
         this.rows = rows;
 
+        int rotations = tiles.length;
+        this.rowMasks = new int[rotations][dimension];
+        this.leftInsets = new int[rotations];
+        this.rightInsets = new int[rotations];
+        this.topInsets = new int[rotations];
+        this.bottomInsets = new int[rotations];
+        this.minColumns = new int[rotations];
+        this.maxColumns = new int[rotations];
+        this.topProfiles = new int[rotations][dimension];
+        this.bottomProfiles = new int[rotations][dimension];
+        int distinct = 0;
+        int[] found = new int[rotations];
+        for(int rotation = 0; rotation < rotations; rotation++) {
+            for(int y = 0; y < dimension; y++) {
+                for(int x = 0; x < dimension; x++) {
+                    if(isTile(x, y, rotation)) {
+                        rowMasks[rotation][y] |= 1 << x;
+                    }
+                }
+            }
+            for(int x = 0; x < dimension; x++) {
+                topProfiles[rotation][x] = -1;
+                bottomProfiles[rotation][x] = -1;
+                for(int y = 0; y < dimension; y++) {
+                    if(isTile(x, y, rotation)) {
+                        if(topProfiles[rotation][x] < 0) {
+                            topProfiles[rotation][x] = y;
+                        }
+                        bottomProfiles[rotation][x] = y;
+                    }
+                }
+            }
+            leftInsets[rotation] = scanLeftInset(rotation);
+            rightInsets[rotation] = scanRightInset(rotation);
+            topInsets[rotation] = scanTopInset(rotation);
+            bottomInsets[rotation] = scanBottomInset(rotation);
+            minColumns[rotation] = -leftInsets[rotation];
+            maxColumns[rotation] = Board.COL_COUNT - 1 - dimension + rightInsets[rotation];
+
+            //Only keep the rotation if no earlier one has the same shape.
+            boolean isNew = true;
+            for(int i = 0; i < distinct && isNew; i++) {
+                isNew = !isSameShape(found[i], rotation);
+            }
+            if(isNew) {
+                found[distinct++] = rotation;
+            }
+        }
+        this.distinctRotations = Arrays.copyOf(found, distinct);
+
         this.spawnCol = 5 - (dimension >> 1);
         this.spawnRow = getTopInset(0);
     }
 
+    /**
+     * Checks whether two rotations have the same shape once their insets are
+     * taken away.
+     * @param first The first rotation.
+     * @param second The second rotation.
+     * @return Whether or not the shapes are the same.
+     */
+    private boolean isSameShape(int first, int second) {
+        int height = dimension - bottomInsets[first] - topInsets[first];
+        if(height != dimension - bottomInsets[second] - topInsets[second]) {
+            return false;
+        }
+        for(int y = 0; y <= height; y++) {
+            int a = rowMasks[first][topInsets[first] + y] >>> leftInsets[first];
+            int b = rowMasks[second][topInsets[second] + y] >>> leftInsets[second];
+            if(a != b) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Gets the base color of this type.
      * @return The base color.
      */
     public Color getBaseColor() {
+        if(baseColor == null) {
+            baseColor = new Color(red, green, blue);
+        }
         return baseColor;
     }
 
@@ -274,6 +379,9 @@ public enum TileType {
      * @return The light color.
      */
     public Color getLightColor() {
+        if(lightColor == null) {
+            lightColor = getBaseColor().brighter();
+        }
         return lightColor;
     }
 
@@ -282,6 +390,9 @@ public enum TileType {
      * @return The dark color.
      */
     public Color getDarkColor() {
+        if(darkColor == null) {
+            darkColor = getBaseColor().darker();
+        }
         return darkColor;
     }
 
@@ -338,6 +449,17 @@ public enum TileType {
         return tiles[rotation][y * dimension + x];
     }
 
+    /**
+     * Gets the tiles of one row of the piece as a bit mask, with bit {@code x}
+     * set when column {@code x} holds a tile.
+     * @param rotation The rotation.
+     * @param y The row of the piece.
+     * @return The row mask.
+     */
+    public int getRowMask(int rotation, int y) {
+        return rowMasks[rotation][y];
+    }
+
     /**
      * The left inset is represented by the number of empty columns on the left
      * side of the array for the given rotation.
@@ -345,6 +467,104 @@ public enum TileType {
      * @return The left inset.
      */
     public int getLeftInset(int rotation) {
+        return leftInsets[rotation];
+    }
+
+    /**
+     * The right inset is represented by the number of empty columns on the left
+     * side of the array for the given rotation.
+     * @param rotation The rotation.
+     * @return The right inset.
+     */
+    public int getRightInset(int rotation) {
+        return rightInsets[rotation];
+    }
+
+    /**
+     * The left inset is represented by the number of empty rows on the top
+     * side of the array for the given rotation.
+     * @param rotation The rotation.
+     * @return The top inset.
+     */
+    public int getTopInset(int rotation) {
+        return topInsets[rotation];
+    }
+
+    /**
+     * The botom inset is represented by the number of empty rows on the bottom
+     * side of the array for the given rotation.
+     * @param rotation The rotation.
+     * @return The bottom inset.
+     */
+    public int getBottomInset(int rotation) {
+        return bottomInsets[rotation];
+    }
+
+    /**
+     * Gets the leftmost column the piece can be placed at in the given rotation.
+     * @param rotation The rotation.
+     * @return The minimum column.
+     */
+    public int getMinColumn(int rotation) {
+        return minColumns[rotation];
+    }
+
+    /**
+     * Gets the rightmost column the piece can be placed at in the given rotation.
+     * @param rotation The rotation.
+     * @return The maximum column.
+     */
+    public int getMaxColumn(int rotation) {
+        return maxColumns[rotation];
+    }
+
+    /**
+     * Gets the highest row of the piece that has a tile in the given column.
+     * @param rotation The rotation.
+     * @param x The column of the piece.
+     * @return The highest row with a tile, or -1 if the column is empty.
+     */
+    public int getTopProfile(int rotation, int x) {
+        return topProfiles[rotation][x];
+    }
+
+    /**
+     * Gets the lowest row of the piece that has a tile in the given column.
+     * @param rotation The rotation.
+     * @param x The column of the piece.
+     * @return The lowest row with a tile, or -1 if the column is empty.
+     */
+    public int getBottomProfile(int rotation, int x) {
+        return bottomProfiles[rotation][x];
+    }
+
+    /**
+     * Gets the number of rotations that give a different shape. Rotations that
+     * only move the same shape around (like the O piece, or the I, S and Z
+     * pieces turned upside down) are not counted.
+     * @return The number of distinct rotations.
+     */
+    public int getRotationCount() {
+        return distinctRotations.length;
+    }
+
+    /**
+     * Gets one of the rotations that give a different shape.
+     * @param index The index, from 0 to {@code getRotationCount() - 1}.
+     * @return The rotation.
+     */
+    public int getDistinctRotation(int index) {
+        return distinctRotations[index];
+    }
+
+    /**
+     * The left inset is represented by the number of empty columns on the left
+     * side of the array for the given rotation.
+     * This scans the tiles, so it's only used to build the placement table.
+     * @param rotation The rotation.
+     * @return The left inset.
+     */
+    private int scanLeftInset(int rotation) {
 		/*
 		 * Loop through from left to right until we find a tile then return
 		 * the column.
@@ -362,10 +582,11 @@ public enum TileType {
     /**
      * The right inset is represented by the number of empty columns on the left
      * side of the array for the given rotation.
+     * This scans the tiles, so it's only used to build the placement table.
      * @param rotation The rotation.
      * @return The right inset.
      */
-    public int getRightInset(int rotation) {
+    private int scanRightInset(int rotation) {
 		/*
 		 * Loop through from right to left until we find a tile then return
 		 * the column.
@@ -383,10 +604,11 @@ public enum TileType {
     /**
      * The left inset is represented by the number of empty rows on the top
      * side of the array for the given rotation.
+     * This scans the tiles, so it's only used to build the placement table.
      * @param rotation The rotation.
      * @return The top inset.
      */
-    public int getTopInset(int rotation) {
+    private int scanTopInset(int rotation) {
 		/*
 		 * Loop through from top to bottom until we find a tile then return
 		 * the row.
@@ -404,10 +626,11 @@ public enum TileType {
     /**
      * The botom inset is represented by the number of empty rows on the bottom
      * side of the array for the given rotation.
+     * This scans the tiles, so it's only used to build the placement table.
      * @param rotation The rotation.
      * @return The bottom inset.
      */
-    public int getBottomInset(int rotation) {
+    private int scanBottomInset(int rotation) {
 		/*
 		 * Loop through from bottom to top until we find a tile then return
 		 * the row.
@@ -0,0 +1,45 @@
+package TetrisGA;
+
+/**
+ * The {@code Topology} enum describes which islands of an island model send
+ * their best chromosomes to which.
+ *
+ */
+public enum Topology {
+
+    /**
+     * Every island receives from the one before it, and the first from the
+     * last, so good chromosomes spread slowly and the islands stay diverse.
+     */
+    RING {
+        @Override
+        public int[] getSources(int island, int islands) {
+            return islands < 2 ? new int[0] : new int[] {(island + islands - 1) % islands};
+        }
+    },
+
+    /**
+     * Every island receives from every other one.
+     */
+    FULL {
+        @Override
+        public int[] getSources(int island, int islands) {
+            int[] sources = new int[islands - 1];
+            for(int i = 0, j = 0; i < islands; i++) {
+                if(i != island) {
+                    sources[j++] = i;
+                }
+            }
+            return sources;
+        }
+    };
+
+    /**
+     * Gets the islands an island receives chromosomes from.
+     * @param island The island, from 0.
+     * @param islands The number of islands.
+     * @return The islands it receives from.
+     */
+    public abstract int[] getSources(int island, int islands);
+
+}
@@ -0,0 +1,290 @@
+package TetrisGA;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * The {@code Worker} class plays fitness games for a {@link Coordinator}. It
+ * connects, announces how many threads it has, and plays every batch it is
+ * sent on one of them, answering as soon as the batch is done. While it
+ * plays it sends a heartbeat as often as the coordinator asked for, so long
+ * games don't get it taken for a lost worker. It exits when the coordinator
+ * disconnects.
+ *
+ * Without a {@code threads} setting it uses every core, and checks every few
+ * seconds whether the number of cores has changed, as it does when a
+ * container is resized. It then grows or shrinks its pool and tells the
+ * coordinator, which changes how many batches it sends.
+ *
+ * Run it with {@code java TetrisGA.Worker --coordinator=host:port}.
+ *
+ */
+public class Worker {
+
+    /**
+     * How often the number of cores is checked, in milliseconds.
+     */
+    private static final long CAPACITY_CHECK_MILLIS = 5000;
+
+    /**
+     * The most piece sequences remembered. Games of the same generation with
+     * common random numbers share their sequences, so a few cover them all.
+     */
+    private static final int SEQUENCE_CACHE_SIZE = 64;
+
+    /**
+     * The engine each thread plays its games on.
+     */
+    private static final ThreadLocal<GameEngine> engines = new ThreadLocal<GameEngine>() {
+        @Override
+        protected GameEngine initialValue() {
+            return new GameEngine(new Evaluator(new double[Population.GENE_COUNT]));
+        }
+    };
+
+    private final DataInputStream in;
+
+    private final DataOutputStream out;
+
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * How often to send a heartbeat, as the coordinator asked, in milliseconds.
+     */
+    private final int heartbeatMillis;
+
+    /**
+     * The piece sequences generated last, by seed, guarded by itself.
+     */
+    private final Map<Long, PieceSequence> sequences = new LinkedHashMap<Long, PieceSequence>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, PieceSequence> eldest) {
+            return size() > SEQUENCE_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * The randomizer of the remembered sequences, guarded by {@code sequences}.
+     */
+    private Randomizer sequencesRandomizer;
+
+    private Worker(Socket socket, int threads) throws IOException {
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        pool = (ThreadPoolExecutor)Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "worker-" + (count++));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        out.writeInt(Coordinator.MAGIC);
+        out.writeInt(Coordinator.VERSION);
+        out.writeInt(threads);
+        out.flush();
+        heartbeatMillis = in.readInt();
+    }
+
+    /**
+     * Connects to a coordinator and plays games for it until it disconnects.
+     * @param args The flags: {@code coordinator} and {@code threads}, see {@link Config}.
+     * @throws IOException If the coordinator can't be reached.
+     */
+    public static void main(String[] args) throws IOException {
+        Config config = Config.parse(args);
+        final boolean fixed = config.isSet("threads");
+        int threads = config.getInt("threads", Runtime.getRuntime().availableProcessors());
+        String address = config.getString("coordinator");
+        int colon = address.lastIndexOf(':');
+        if(colon < 0) {
+            throw new IllegalArgumentException("coordinator must be host:port, not " + address);
+        }
+        Socket socket = new Socket(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+        final Worker worker = new Worker(socket, threads);
+        System.out.println("Connected to " + address + " with " + threads + " threads");
+
+        Thread heartbeat = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                worker.sendHeartbeats();
+            }
+        }, "worker-heartbeat");
+        heartbeat.setDaemon(true);
+        heartbeat.start();
+        if(!fixed) {
+            Thread watcher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    worker.watchCapacity();
+                }
+            }, "worker-capacity");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+        try {
+            worker.serve();
+        } finally {
+            worker.pool.shutdownNow();
+            socket.close();
+        }
+        System.out.println("Coordinator disconnected");
+    }
+
+    /**
+     * Reads batches and hands them to the pool, until the coordinator
+     * disconnects.
+     */
+    private void serve() throws IOException {
+        Randomizer[] randomizers = Randomizer.values();
+        while(true) {
+            byte type;
+            try {
+                type = in.readByte();
+            } catch(EOFException e) {
+                return;
+            }
+            if(type != Coordinator.BATCH) {
+                throw new IOException("Unknown message " + type);
+            }
+            final long id = in.readLong();
+            final Randomizer randomizer = randomizers[in.readInt()];
+            final int pieceBudget = in.readInt();
+            final int scoreCap = in.readInt();
+            final int count = in.readInt();
+            final double[] weights = new double[count * Population.GENE_COUNT];
+            final long[] seeds = new long[count];
+            for(int game = 0; game < count; game++) {
+                for(int gene = 0; gene < Population.GENE_COUNT; gene++) {
+                    weights[game * Population.GENE_COUNT + gene] = in.readDouble();
+                }
+                seeds[game] = in.readLong();
+            }
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    play(id, randomizer, pieceBudget, scoreCap, weights, seeds);
+                }
+            });
+        }
+    }
+
+    /**
+     * Plays a batch on the calling thread's engine and sends back its results.
+     */
+    private void play(long id, Randomizer randomizer, int pieceBudget, int scoreCap, double[] weights, long[] seeds) {
+        GameEngine engine = engines.get();
+        double[] chromosome = new double[Population.GENE_COUNT];
+        GameResult[] results = new GameResult[seeds.length];
+        for(int game = 0; game < seeds.length; game++) {
+            System.arraycopy(weights, game * Population.GENE_COUNT, chromosome, 0, Population.GENE_COUNT);
+            engine.getEvaluator().setWeights(chromosome);
+            engine.playGame(getSequence(randomizer, seeds[game]), pieceBudget, scoreCap);
+            results[game] = new GameResult(engine.getScore(), engine.getLines(), engine.getPieces(), !engine.isGameOver());
+        }
+        try {
+            synchronized(out) {
+                out.writeByte(Coordinator.RESULT);
+                out.writeLong(id);
+                out.writeInt(results.length);
+                for(GameResult result : results) {
+                    out.writeInt(result.getScore());
+                    out.writeInt(result.getLines());
+                    out.writeInt(result.getPieces());
+                    out.writeBoolean(result.isSurvived());
+                }
+                out.flush();
+            }
+        } catch(IOException e) {
+            //The coordinator is gone; serve() sees it too and ends the worker.
+        }
+    }
+
+    private PieceSequence getSequence(Randomizer randomizer, long seed) {
+        synchronized(sequences) {
+            if(randomizer != sequencesRandomizer) {
+                sequences.clear();
+                sequencesRandomizer = randomizer;
+            }
+            PieceSequence sequence = sequences.get(seed);
+            if(sequence == null) {
+                sequence = new PieceSequence(randomizer, seed);
+                sequences.put(seed, sequence);
+            }
+            return sequence;
+        }
+    }
+
+    /**
+     * Tells the coordinator every {@code heartbeatMillis} that the worker is
+     * still there, until it disconnects.
+     */
+    private void sendHeartbeats() {
+        while(!pool.isShutdown()) {
+            try {
+                Thread.sleep(heartbeatMillis);
+            } catch(InterruptedException e) {
+                return;
+            }
+            try {
+                synchronized(out) {
+                    out.writeByte(Coordinator.HEARTBEAT);
+                    out.flush();
+                }
+            } catch(IOException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Follows the number of cores, resizing the pool and telling the
+     * coordinator whenever it changes.
+     */
+    private void watchCapacity() {
+        int threads = pool.getMaximumPoolSize();
+        while(!pool.isShutdown()) {
+            try {
+                Thread.sleep(CAPACITY_CHECK_MILLIS);
+            } catch(InterruptedException e) {
+                return;
+            }
+            int cores = Runtime.getRuntime().availableProcessors();
+            if(cores == threads) {
+                continue;
+            }
+            if(cores > threads) {
+                pool.setMaximumPoolSize(cores);
+                pool.setCorePoolSize(cores);
+            } else {
+                pool.setCorePoolSize(cores);
+                pool.setMaximumPoolSize(cores);
+            }
+            threads = cores;
+            try {
+                synchronized(out) {
+                    out.writeByte(Coordinator.CAPACITY);
+                    out.writeInt(threads);
+                    out.flush();
+                }
+            } catch(IOException e) {
+                return;
+            }
+            System.out.println("Now playing on " + threads + " threads");
+        }
+    }
+
+}
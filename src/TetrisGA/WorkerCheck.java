@@ -0,0 +1,113 @@
+package TetrisGA;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code WorkerCheck} class checks that a healthy worker playing a batch
+ * much longer than the coordinator's timeout isn't given up on. It plays
+ * games locally with the weights of {@link Benchmark} for a few timeouts,
+ * then starts a {@link Coordinator} with a timeout of one second and a
+ * {@link Worker} in the same JVM, and sends it the same games as a single
+ * batch. No batch may be sent again, and the scores must match the local
+ * ones. It exits with status 1 if they don't, or if the batch was too quick
+ * to tell.
+ *
+ * Run it with {@code java TetrisGA.WorkerCheck}. The build runs it in the
+ * {@code test} phase.
+ *
+ */
+public class WorkerCheck {
+
+    /**
+     * How long the coordinator waits for a silent worker, in seconds.
+     */
+    private static final int TIMEOUT_SECONDS = 1;
+
+    /**
+     * How many timeouts the games are played for locally, which the batch
+     * then takes about as long as.
+     */
+    private static final int TIMEOUTS = 4;
+
+    /**
+     * The most pieces a game may place, so no single game runs away.
+     */
+    private static final int PIECE_BUDGET = 150000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        GameEngine engine = new GameEngine(new Evaluator(Benchmark.WEIGHTS));
+        List<GameResult> local = new ArrayList<GameResult>();
+        long end = System.nanoTime() + TIMEOUTS * TIMEOUT_SECONDS * 1000000000L;
+        while(System.nanoTime() < end) {
+            engine.playGame(new PieceSequence(Randomizer.UNIFORM, local.size() + 1), PIECE_BUDGET, Integer.MAX_VALUE);
+            local.add(new GameResult(engine.getScore(), engine.getLines(), engine.getPieces(), !engine.isGameOver()));
+        }
+        int games = local.size();
+        final double[] weights = new double[games * Population.GENE_COUNT];
+        final long[] seeds = new long[games];
+        for(int game = 0; game < games; game++) {
+            System.arraycopy(Benchmark.WEIGHTS, 0, weights, game * Population.GENE_COUNT, Population.GENE_COUNT);
+            seeds[game] = game + 1;
+        }
+
+        final Coordinator coordinator = new Coordinator(0, games, TIMEOUT_SECONDS);
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Worker.main(new String[] {"--coordinator=localhost:" + coordinator.getPort(), "--threads=1"});
+                } catch(IOException e) {
+                    throw new IllegalStateException("The worker can't connect", e);
+                }
+            }
+        }, "worker-check");
+        worker.setDaemon(true);
+        worker.start();
+        //A dropped worker leaves its batch waiting for another one forever.
+        final GameResult[][] remote = new GameResult[1][];
+        Thread play = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                remote[0] = coordinator.play(weights, seeds, Randomizer.UNIFORM, PIECE_BUDGET, Integer.MAX_VALUE);
+            }
+        }, "worker-check-play");
+        play.setDaemon(true);
+        long start = System.nanoTime();
+        play.start();
+        play.join(3 * TIMEOUTS * TIMEOUT_SECONDS * 1000L);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long retries = coordinator.getRetries();
+        coordinator.close();
+        if(remote[0] == null) {
+            System.out.println(String.format("FAILED: the batch wasn't done after %.1f s, %d batches sent again", seconds, retries));
+            System.exit(1);
+        }
+
+        boolean passed = true;
+        System.out.println(String.format("a batch of %d games took %.1f s, with a timeout of %d s and %d batches sent again",
+                games, seconds, TIMEOUT_SECONDS, retries));
+        if(seconds < 2 * TIMEOUT_SECONDS) {
+            System.out.println("FAILED: the batch was too quick to show that a slow worker is kept");
+            passed = false;
+        }
+        if(retries > 0) {
+            System.out.println("FAILED: the worker was dropped while it was playing");
+            passed = false;
+        }
+        for(int game = 0; game < games; game++) {
+            GameResult result = remote[0][game];
+            if(result.getScore() != local.get(game).getScore() || result.getPieces() != local.get(game).getPieces()) {
+                System.out.println("FAILED: game " + game + " scored " + result.getScore() + " on the worker and "
+                        + local.get(game).getScore() + " locally");
+                passed = false;
+                break;
+            }
+        }
+        if(!passed) {
+            System.exit(1);
+        }
+    }
+
+}
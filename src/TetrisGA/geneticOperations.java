@@ -1,5 +1,14 @@
 package TetrisGA;
-import java.util.Random;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  static int  populationSize=200;
@@ -12,106 +21,777 @@ import java.util.Random;
  * -2.841884818353364 51.51154554636767 -86.29884523976246 -17.97583422646018 -3.496915438232847 95100.0
  */
 public class geneticOperations {
-    static int mutations=0;
-    static int  populationSize=200;
-    static int  topChroms=populationSize/20;
-    static int  numberOfGames=8;
-    static int  mutationRate=4;
-    static int numberOfGenerations=10;
-    static int currentGeneration = 1;
-    static int maxScore=100000;
-    static double[][] bestChromies = new double[populationSize/10][6];
-    private static int cos;
-    static int geneMax=100;
-    static int geneMin=-100;
+    // ustawienia przebiegu, wczytane z Config
+    final int  populationSize;
+    final int  topChroms;
+    final int  numberOfGames;
+    final int  mutationRate;
+    final int numberOfGenerations;
+    // gra konczy sie po pieceBudget klockach albo po osiagnieciu maxScore punktow
+    final int pieceBudget;
+    final int maxScore;
+    final int geneMax;
+    final int geneMin;
+    // ile watkow gra w gry
+    final int threads;
+    // ziarno calego przebiegu - ten sam seed daje te same klocki i te same populacje
+    // (przy wznawianiu bierzemy je z zapisanego stanu)
+    long seed;
+    final Randomizer randomizer;
+    // wszystkie chromosomy w pokoleniu graja na tych samych klockach
+    final boolean commonRandomNumbers;
+    // slabe chromosomy odpadaja po kilku grach, zanim zagraja wszystkie numberOfGames
+    final boolean racing;
+    // ile roznych chromosomow pamietamy, zeby nie grac nimi drugi raz
+    final int cacheSize;
+    // bez pokolen - nowe dziecko startuje, gdy tylko zwolni sie watek
+    final boolean steadyState;
+    // jak wybieramy rodzicow nastepnej populacji
+    final Selection selection;
+    // plik, do ktorego zapisujemy stan przebiegu, pusty = bez zapisu
+    final String checkpoint;
+    // co ile pokolen zapisujemy stan
+    final int checkpointEvery;
+    // zaczynamy od zapisanego stanu zamiast od nowa
+    final boolean resume;
+    // plik z wynikami (JSON w kazdej linii), pusty = wszystko na konsole
+    final String metricsPath;
+    // plik z historia wszystkich ocenionych chromosomow, pusty = bez historii
+    final String historyPath;
+    // skad bierzemy elity na start: checkpointy, pliki historii albo "manual", po przecinku
+    final String warmStart;
+    final int warmStartElites;
+    // czym wypelniamy reszte pierwszej populacji
+    final Seeding seeding;
+    // odchylenie szumu wokol elit, jako czesc zakresu genow
+    final double warmStartSigma;
+    // przebieg konczy sie, gdy najlepszy chromosom osiagnie ten wynik (NaN = bez celu)
+    final double targetFitness;
+    // model wysp: ile jest wysp, ktora to wyspa i przez jaki katalog wymieniaja chromosomy
+    final int islands;
+    final int island;
+    final String migrationDir;
+    // co ile pokolen wyspy wymieniaja migrants najlepszych chromosomow
+    final int migrationEvery;
+    final int migrants;
+    final Topology topology;
+    // ile sekund czekamy na sasiada, zanim pojdziemy dalej bez jego chromosomow
+    final int migrationTimeout;
+    // port, na ktorym czekamy na zdalnych workerow ("" = gramy lokalnie)
+    final String listen;
+    // ile gier wysylamy naraz i ile sekund cisza workera z grami jest dozwolona
+    final int batchSize;
+    final int workerTimeout;
+    // ilu workerow uruchamiamy sami na tej maszynie
+    final int localWorkers;
+    // wszystkie ustawienia, z wyliczonymi wartosciami
+    final Config config;
+
+    // stan jednego przebiegu algorytmu
+    int mutations=0;
+    int currentGeneration = 1;
+    // rodzice nastepnej populacji
+    Population bestChromies;
+    private int cos;
+    private StatefulRandom rand;
+    private FitnessCache cache;
+    // gdy jest plik z wynikami, na konsole idzie tylko linia na pokolenie
+    private MetricsWriter metrics;
+    private long startNanos;
+    private HistoryStore history;
+    // rekordy rodzicow kazdego chromosomu w historii, po dwa na chromosom
+    private long[] parents;
+    // pokolenie, w ktorym osiagnelismy targetFitness, -1 = jeszcze nie
+    private long targetGeneration = -1;
     // lista chromosomow
-    public static double[][] chromosome = new double[populationSize][6];
-
-    public static int currentChromosome=0;
-
-    public static void getBestChromosomes(){
-        int numberOfBestChromies = topChroms;
-        int bestChromieIndex=0;
-        double bestScore=0;
-
-        for (int i=0;i<numberOfBestChromies;i++){
-            bestChromieIndex=0;
-            bestScore=0;
-            for (int j=0;j<populationSize;j++) {
-
-                if (chromosome[j][5] > bestScore) {
-                    bestScore=chromosome[j][5];
-                    for (int k=0;k<6;k++){
-                        bestChromies[i][k]=chromosome[j][k];
-                        bestChromieIndex=j;
-                        }
-                    }
+    public Population population;
+
+    public int currentChromosome=0;
+
+    /**
+     * Creates a run with every setting at its default.
+     */
+    public geneticOperations(){
+        this(new Config());
+    }
+
+    /**
+     * Creates a run and sizes the populations from its settings. Settings
+     * left empty are worked out here and written back, so the printed
+     * configuration repeats the run exactly.
+     * @param config The settings of the run.
+     * @throws IllegalArgumentException If the settings don't make sense together.
+     */
+    public geneticOperations(Config config){
+        this.config = config;
+        populationSize = config.getInt("populationSize", 200);
+        topChroms = config.getInt("topChroms", Math.max(1, populationSize/20));
+        numberOfGames = config.getInt("numberOfGames", 8);
+        mutationRate = config.getInt("mutationRate", 4);
+        numberOfGenerations = config.getInt("numberOfGenerations", 10);
+        pieceBudget = config.getInt("pieceBudget", Integer.MAX_VALUE);
+        maxScore = config.getInt("maxScore", Integer.MAX_VALUE);
+        geneMin = config.getInt("geneMin", -100);
+        geneMax = config.getInt("geneMax", 100);
+        threads = config.getInt("threads", Runtime.getRuntime().availableProcessors());
+        seed = config.getLong("seed", System.nanoTime());
+        randomizer = config.getEnum("randomizer", Randomizer.class);
+        commonRandomNumbers = config.getBoolean("commonRandomNumbers");
+        racing = config.getBoolean("racing");
+        cacheSize = config.getInt("cacheSize", 0);
+        steadyState = config.getBoolean("steadyState");
+        selection = config.getEnum("selection", Selection.class);
+        checkpoint = config.getString("checkpoint");
+        checkpointEvery = config.getInt("checkpointEvery", 1);
+        resume = config.getBoolean("resume");
+        metricsPath = config.getString("metrics");
+        historyPath = config.getString("history");
+        warmStart = config.getString("warmStart");
+        warmStartElites = config.getInt("warmStartElites", topChroms);
+        seeding = config.getEnum("seeding", Seeding.class);
+        warmStartSigma = config.getDouble("warmStartSigma", 0.05);
+        targetFitness = config.getDouble("targetFitness", Double.NaN);
+        islands = config.getInt("islands", 1);
+        island = config.getInt("island", 0);
+        migrationDir = config.getString("migrationDir");
+        migrationEvery = config.getInt("migrationEvery", 5);
+        migrants = config.getInt("migrants", topChroms);
+        topology = config.getEnum("topology", Topology.class);
+        migrationTimeout = config.getInt("migrationTimeout", 60);
+        listen = config.getString("listen");
+        batchSize = config.getInt("batchSize", 16);
+        workerTimeout = config.getInt("workerTimeout", 300);
+        localWorkers = config.getInt("localWorkers", 0);
+
+        if(populationSize < 1 || topChroms < 1 || topChroms > populationSize){
+            throw new IllegalArgumentException("topChroms must be between 1 and populationSize");
+        }
+        if(numberOfGames < 1 || threads < 1 || numberOfGenerations < 1){
+            throw new IllegalArgumentException("numberOfGames, threads and numberOfGenerations must be at least 1");
+        }
+        if(geneMin >= geneMax){
+            throw new IllegalArgumentException("geneMin must be below geneMax");
+        }
+        if(checkpointEvery < 1){
+            throw new IllegalArgumentException("checkpointEvery must be at least 1");
+        }
+        if(resume && checkpoint.isEmpty()){
+            throw new IllegalArgumentException("resume needs a checkpoint to resume from");
+        }
+        if(warmStartElites < 1 || warmStartSigma < 0){
+            throw new IllegalArgumentException("warmStartElites must be at least 1 and warmStartSigma not below 0");
+        }
+        if(islands < 1 || island < 0 || island >= islands){
+            throw new IllegalArgumentException("island must be between 0 and islands - 1");
+        }
+        if(islands > 1 && (migrationDir.isEmpty() || steadyState)){
+            throw new IllegalArgumentException("islands need a migrationDir, and a generational run");
+        }
+        if(islands > 1 && (migrationEvery < 1 || migrants < 1 || migrants > populationSize / 2)){
+            throw new IllegalArgumentException("migrationEvery must be at least 1 and migrants between 1 and populationSize / 2");
+        }
+        if(!listen.isEmpty() && steadyState){
+            throw new IllegalArgumentException("listen needs a generational run, steady-state children are played locally");
+        }
+        if(batchSize < 1 || workerTimeout < 1 || localWorkers < 0 || (localWorkers > 0 && listen.isEmpty())){
+            throw new IllegalArgumentException("batchSize and workerTimeout must be at least 1, and localWorkers need listen");
+        }
+        config.set("topChroms", String.valueOf(topChroms));
+        config.set("threads", String.valueOf(threads));
+        config.set("seed", String.valueOf(seed));
+        // kazda wyspa ma wlasne ziarno, wyprowadzone ze wspolnego
+        seed += island * 0x9E3779B97F4A7C15L;
+
+        bestChromies = new Population(topChroms);
+        rand = new StatefulRandom(seed);
+        population = new Population(populationSize);
+        parents = new long[populationSize * 2];
+        Arrays.fill(parents, -1);
+    }
+
+    /**
+     * Runs the genetic algorithm without opening a window, either generation
+     * by generation or steady-state. The fitness games are spread over all
+     * available cores. Both modes evaluate the same number of chromosomes,
+     * and report how busy they kept the cores. With {@code resume} the run
+     * carries on from its checkpoint, with the seed saved there. With a
+     * {@code metrics} file every evaluation and generation is appended there
+     * instead of printed, and with a {@code history} file every evaluated
+     * chromosome is kept there with its parents. With {@code listen} the
+     * games are played by {@link Worker} processes that connect to that
+     * port, {@code localWorkers} of them started here.
+     */
+    public void run(){
+        cache = cacheSize > 0 ? new FitnessCache(cacheSize) : null;
+        Checkpoint saved = resume ? readCheckpoint() : null;
+        if(saved != null){
+            seed = saved.getSeed();
+            if(islands == 1){
+                config.set("seed", String.valueOf(seed));
+            }
+        }
+        if(!migrationDir.isEmpty()){
+            clearMigrants();
+        }
+
+        ParallelEvaluator evaluator = new ParallelEvaluator(threads, randomizer, seed);
+        evaluator.setCommonRandomNumbers(commonRandomNumbers);
+        evaluator.setPieceBudget(pieceBudget);
+        evaluator.setScoreCap(maxScore);
+        evaluator.setFitnessCache(cache);
+        Coordinator coordinator = null;
+        List<Process> workers = new ArrayList<Process>();
+        if(!listen.isEmpty()){
+            try{
+                coordinator = new Coordinator(Integer.parseInt(listen), batchSize, workerTimeout);
+            }catch(IOException e){
+                throw new IllegalStateException("Can't listen for workers on port " + listen, e);
+            }
+            evaluator.setCoordinator(coordinator);
+            startWorkers(workers);
+        }
+        System.out.print(config);
+        System.out.println("Seed: " + seed + " (" + randomizer + (commonRandomNumbers ? ", common random numbers" : ", independent games") + ")");
+        if(saved != null){
+            evaluator.setRounds(saved.getRounds());
+            population = saved.getPopulation();
+            rand = saved.getRandom();
+            System.out.println("Resumed from " + checkpoint + " after " + saved.getProgress() + (steadyState ? " children" : " generations"));
+        }
+
+        if(!metricsPath.isEmpty()){
+            try{
+                metrics = new MetricsWriter(metricsPath);
+            }catch(IOException e){
+                throw new IllegalStateException("Can't open metrics file " + metricsPath, e);
+            }
+        }
+
+        if(!historyPath.isEmpty()){
+            try{
+                history = new HistoryStore(historyPath);
+            }catch(IOException e){
+                throw new IllegalStateException("Can't open history file " + historyPath, e);
+            }
+        }
+
+        startNanos = System.nanoTime();
+        long evaluations;
+        if(steadyState){
+            evaluations = runSteadyState(evaluator, saved);
+        }else{
+            evaluations = runGenerations(evaluator, saved);
+        }
+        long nanos = System.nanoTime() - startNanos;
+        if(metrics != null){
+            try{
+                metrics.close();
+            }catch(IOException e){
+                throw new IllegalStateException("Can't write metrics file " + metricsPath, e);
+            }
+            metrics = null;
+        }
+        if(history != null){
+            try{
+                history.close();
+            }catch(IOException e){
+                throw new IllegalStateException("Can't write history file " + historyPath, e);
+            }
+            history = null;
+        }
+
+        System.out.print((steadyState ? "Steady-state" : "Generational") + ": " + evaluations + " evaluations in "
+                + String.format("%.1f s, %.1f evaluations/sec", nanos / 1e9, evaluations * 1e9 / nanos));
+        if(coordinator == null){
+            System.out.println(String.format(", %.0f%% core utilisation", evaluator.getBusyNanos() * 100.0 / nanos / evaluator.getThreads()));
+        }else{
+            System.out.println();
+            System.out.println("Workers: " + coordinator.getWorkers() + " connected, " + coordinator.getRetries() + " batches sent again");
+            coordinator.close();
+            stopWorkers(workers);
+        }
+        evaluator.shutdown();
+    }
+
+    /**
+     * Evaluates the whole population every generation and breeds the next
+     * one from its best chromosomes, until {@code numberOfGenerations} or
+     * {@code targetFitness} is reached. The evaluated population is saved
+     * every {@code checkpointEvery} generations, before the next one is bred.
+     * @param evaluator The evaluator to play the games with.
+     * @param saved The checkpoint to carry on from, or {@code null} to start afresh.
+     * @return The number of chromosomes evaluated.
+     */
+    private long runGenerations(ParallelEvaluator evaluator, Checkpoint saved){
+        long evaluations = 0;
+        int first = 0;
+        if(saved == null){
+            generateFirstPopulation();
+        }else{
+            // zapisana populacja jest juz oceniona - od razu tworzymy nastepna
+            first = (int)saved.getProgress();
+            currentGeneration = first;
+            getNewPopulation();
+        }
+        for (int generation=first;generation<numberOfGenerations;generation++){
+            evaluator.evaluate(population, numberOfGames, racing ? topChroms : 0);
+            recordHistory(population, currentGeneration, parents);
+            if(metrics != null){
+                recordGeneration(evaluator, currentGeneration, (long)populationSize * (generation + 1), true,
+                        evaluator.getEvaluationsPerSecond());
+            }else{
+                for (currentChromosome=0;currentChromosome<populationSize;currentChromosome++){
+                    System.out.println( "Score: " + String.format("%.0f", population.getFitness(currentChromosome))
+                            + String.format(" (%.3f lines/piece, %.1f points/piece, survived %.0f%%)",
+                            evaluator.getLinesPerPiece(currentChromosome), evaluator.getScorePerPiece(currentChromosome),
+                            evaluator.getSurvivalRate(currentChromosome) * 100));
                 }
+                currentChromosome=0;
+                System.out.println("Games/sec: " + String.format("%.1f", evaluator.getGamesPerSecond()) + " (" + evaluator.getThreads() + " threads)");
+                System.out.println("Games: " + evaluator.getGames() + String.format(" (%.2fx fewer than a full evaluation, %d chromosomes cached)", evaluator.getRaceCut(), evaluator.getCacheHits()));
+                System.out.println("Variance reduction vs independent games: " + String.format("%.2f", evaluator.getVarianceReduction()) + "x");
+                System.out.println(String.format("Evaluations/sec: %.1f (%.0f%% core utilisation)", evaluator.getEvaluationsPerSecond(), evaluator.getUtilisation() * 100));
+            }
+            evaluations += populationSize;
+            boolean reached = checkTarget(currentGeneration, population.getFitness(Selection.getTop(population, 1)[0]));
+            boolean last = reached || generation + 1 == numberOfGenerations;
+            if(!migrationDir.isEmpty() && last){
+                sendMigrants(Migrants.getFinalFile(new File(migrationDir), island), evaluations);
+            }else if(islands > 1 && (generation + 1) % migrationEvery == 0){
+                migrate(evaluations);
+            }
+            if((generation + 1) % checkpointEvery == 0 || last){
+                writeCheckpoint(evaluator, generation + 1);
+            }
+            if(reached){
+                break;
+            }
+            getNewPopulation();
+        }
+        return evaluations;
+    }
 
-            chromosome[bestChromieIndex][5]=0;
+    /**
+     * Evaluates the first population as a whole, and from then on breeds a
+     * child from the current parents whenever a worker is free. A finished
+     * child replaces the worst chromosome of the population if it's better.
+     * No more children are bred once one reaches {@code targetFitness}.
+     * Twice as many children as threads are kept in flight, so no worker
+     * waits for the next one to be bred.
+     *
+     * The population is saved every {@code checkpointEvery} times
+     * {@code populationSize} finished children. Children still in flight
+     * aren't saved; a resumed run breeds new ones in their place.
+     * @param evaluator The evaluator to play the games with.
+     * @param saved The checkpoint to carry on from, or {@code null} to start afresh.
+     * @return The number of chromosomes evaluated.
+     */
+    private long runSteadyState(ParallelEvaluator evaluator, Checkpoint saved){
+        long finished = 0;
+        if(saved == null){
+            generateFirstPopulation();
+            evaluator.evaluate(population, numberOfGames);
+            recordHistory(population, 1, parents);
+            if(metrics != null){
+                recordGeneration(evaluator, 1, populationSize, true, evaluator.getEvaluationsPerSecond());
             }
+            checkTarget(1, population.getFitness(Selection.getTop(population, 1)[0]));
+        }else{
+            finished = saved.getProgress();
+        }
+        getBestChromosomes();
+        long windowStart = System.nanoTime();
 
+        // dzieci w trakcie oceniania, jedno miejsce na kazde
+        Population children = new Population(evaluator.getThreads() * 2);
+        long[] childParents = new long[children.size() * 2];
+        long childCount = (long)populationSize * (numberOfGenerations - 1);
+        long checkpointChildren = (long)populationSize * checkpointEvery;
+        long resumedAt = finished;
+        long submitted = finished;
+        int inFlight = 0;
+        while(submitted < childCount && inFlight < children.size() && targetGeneration < 0){
+            breed(children, inFlight, childParents);
+            evaluator.submit(children, inFlight, numberOfGames);
+            submitted++;
+            inFlight++;
         }
+        while(inFlight > 0){
+            int child = evaluator.take();
+            inFlight--;
+            finished++;
+            // pokolenie = kolejne populationSize dzieci
+            long generation = 1 + (finished + populationSize - 1) / populationSize;
+            if(history != null){
+                children.setId(child, appendHistory(children, child, (int)generation, childParents));
+                if(finished % populationSize == 0){
+                    flushHistory();
+                }
+            }
+            if(metrics != null){
+                metrics.recordEvaluation(generation, child, children, evaluator.getLinesPerPiece(child),
+                        evaluator.getScorePerPiece(child), evaluator.getSurvivalRate(child));
+            }
 
-    private static void crossOver(){
-        double[] firstChromosome;
-        double[] secondChromosome;
-        int index;
-        Random rand = new Random();
+            int worst = 0;
+            for (int i=1;i<populationSize;i++){
+                if (population.getFitness(i) < population.getFitness(worst)) {
+                    worst = i;
+                }
+            }
+            checkTarget(generation, children.getFitness(child));
+            if (children.getFitness(child) > population.getFitness(worst)) {
+                children.copyTo(child, population, worst);
+                getBestChromosomes();
+                if(metrics == null){
+                    System.out.println("Score: " + String.format("%.0f", children.getFitness(child)) + " (replaced chromosome " + worst + ")");
+                }
+            }
+            if(metrics != null && finished % populationSize == 0){
+                long now = System.nanoTime();
+                recordGeneration(evaluator, generation, populationSize + finished, false, populationSize * 1e9 / (now - windowStart));
+                windowStart = now;
+            }
 
-        index=rand.nextInt(topChroms);
-        firstChromosome = bestChromies[index];
-        index=rand.nextInt(topChroms);
-        secondChromosome = bestChromies[index];
+            if(submitted < childCount && targetGeneration < 0){
+                breed(children, child, childParents);
+                evaluator.submit(children, child, numberOfGames);
+                submitted++;
+                inFlight++;
+            }
+            if(finished % checkpointChildren == 0){
+                writeCheckpoint(evaluator, finished);
+            }
+        }
+        if(finished % checkpointChildren != 0 || finished == resumedAt){
+            writeCheckpoint(evaluator, finished);
+        }
 
-        for(int i=0;i<5;i++) {
+        if(metrics == null){
+            printBestChromosomes();
+        }
+        return (saved == null ? populationSize : 0) + finished - resumedAt;
+    }
+
+    /**
+     * Sends the {@code migrants} best chromosomes of the evaluated population
+     * to the other islands, and replaces the worst ones with the chromosomes
+     * sent by the islands {@code topology} names. An island that has stopped,
+     * or doesn't send within {@code migrationTimeout} seconds, is skipped.
+     * @param evaluations The number of chromosomes evaluated so far.
+     */
+    private void migrate(long evaluations){
+        File directory = new File(migrationDir);
+        sendMigrants(Migrants.getFile(directory, island, currentGeneration), evaluations);
+
+        int[] order = Selection.getTop(population, populationSize);
+        int replaced = 0;
+        for (int source : topology.getSources(island, islands)){
+            Migrants received = waitForMigrants(directory, source);
+            if (received == null){
+                continue;
+            }
+            Population immigrants = received.getPopulation();
+            // przybysze zastepuja najgorsze chromosomy, ale nigdy wiecej niz pol populacji
+            for (int i=0;i<immigrants.size() && replaced<populationSize/2;i++){
+                immigrants.copyTo(i, population, order[populationSize - 1 - replaced]);
+                replaced++;
+            }
+        }
+        if (metrics == null){
+            System.out.println("Migration: " + replaced + " chromosomes received by island " + island);
+        }
+    }
+
+    private void sendMigrants(File file, long evaluations){
+        int[] best = Selection.getTop(population, migrants);
+        Population batch = new Population(best.length);
+        for (int i=0;i<best.length;i++){
+            population.copyTo(best[i], batch, i);
+            batch.setId(i, -1);
+        }
+        try{
+            new Migrants(island, currentGeneration, evaluations, batch).write(file);
+        }catch(IOException e){
+            throw new IllegalStateException("Can't write migrants to " + file, e);
+        }
+    }
+
+    /**
+     * Waits for the chromosomes an island sends after the current generation.
+     * @return The chromosomes, or {@code null} if the island stopped or took too long.
+     */
+    private Migrants waitForMigrants(File directory, int source){
+        File file = Migrants.getFile(directory, source, currentGeneration);
+        long deadline = System.nanoTime() + migrationTimeout * 1000000000L;
+        while (!file.exists()){
+            if (Migrants.getFinalFile(directory, source).exists()){
+                return null;
+            }
+            if (System.nanoTime() > deadline){
+                System.out.println("Migration: island " + source + " sent nothing for generation " + currentGeneration + ", going on without it");
+                return null;
+            }
+            try{
+                Thread.sleep(20);
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for island " + source, e);
+            }
+        }
+        try{
+            return Migrants.read(file);
+        }catch(IOException e){
+            throw new IllegalStateException("Can't read migrants from " + file, e);
+        }
+    }
+
+    /**
+     * Deletes the chromosomes this island sent in an earlier run with the
+     * same directory, so the other islands don't take them for new ones.
+     * @throws IllegalStateException If one of them can't be deleted.
+     */
+    private void clearMigrants(){
+        File directory = new File(migrationDir);
+        if (!directory.isDirectory() && !directory.mkdirs()){
+            throw new IllegalStateException("Can't create migration directory " + migrationDir);
+        }
+        try{
+            Migrants.clear(directory, island);
+        }catch(IOException e){
+            throw new IllegalStateException("Can't clear the migrants of island " + island + " from " + migrationDir, e);
+        }
+    }
+
+    /**
+     * Starts {@code localWorkers} worker processes on this machine, which
+     * share its cores and connect to the {@code listen} port.
+     * @param workers The list the processes are added to.
+     */
+    private void startWorkers(List<Process> workers){
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        int workerThreads = Math.max(1, threads / Math.max(1, localWorkers));
+        for (int i=0; i<localWorkers; i++){
+            ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "TetrisGA.Worker",
+                    "--coordinator=localhost:" + listen, "--threads=" + workerThreads);
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+            try{
+                workers.add(builder.start());
+            }catch(IOException e){
+                throw new IllegalStateException("Can't start a local worker", e);
+            }
+        }
+    }
+
+    /**
+     * Waits for the local workers to see the coordinator close and exit.
+     * @param workers The worker processes.
+     */
+    private void stopWorkers(List<Process> workers){
+        for (Process worker : workers){
+            try{
+                if(!worker.waitFor(10, TimeUnit.SECONDS)){
+                    worker.destroy();
+                }
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                worker.destroy();
+            }
+        }
+    }
+
+    /**
+     * Notes the first generation whose best chromosome reaches
+     * {@code targetFitness}.
+     * @param generation The generation.
+     * @param fitness The fitness of its best chromosome, or of a new child.
+     * @return Whether the target was reached just now.
+     */
+    private boolean checkTarget(long generation, double fitness){
+        if(targetGeneration >= 0 || !(fitness >= targetFitness)){
+            return false;
+        }
+        targetGeneration = generation;
+        System.out.println(String.format("Target fitness %.0f reached in generation %d", targetFitness, generation));
+        return true;
+    }
+
+    /**
+     * Gets the generation in which the best chromosome first reached
+     * {@code targetFitness}.
+     * @return The generation, or -1 if it wasn't reached.
+     */
+    public long getTargetGeneration(){
+        return targetGeneration;
+    }
+
+    /**
+     * Sends the summary of a generation to the metrics file, and prints a
+     * single line about it.
+     * @param evaluator The evaluator that played the games.
+     * @param generation The generation.
+     * @param evaluations The number of chromosomes evaluated so far.
+     * @param wholePopulation Whether the evaluator just evaluated the whole population, whose evaluations are sent too.
+     * @param evaluationsPerSecond The evaluations per second of the generation.
+     */
+    private void recordGeneration(ParallelEvaluator evaluator, long generation, long evaluations, boolean wholePopulation,
+                                  double evaluationsPerSecond){
+        double wallSeconds = (System.nanoTime() - startNanos) / 1e9;
+        if(wholePopulation){
+            for (int i=0;i<populationSize;i++){
+                metrics.recordEvaluation(generation, i, population, evaluator.getLinesPerPiece(i),
+                        evaluator.getScorePerPiece(i), evaluator.getSurvivalRate(i));
+            }
+        }
+        metrics.recordGeneration(generation, evaluations, population, geneMax - geneMin, evaluationsPerSecond, wallSeconds);
+        System.out.println(String.format("Generation %d: best %.0f, %.1f evaluations/sec, %.1f s", generation,
+                population.getFitness(Selection.getTop(population, 1)[0]), evaluationsPerSecond, wallSeconds));
+    }
+
+    /**
+     * Appends every chromosome of an evaluated population to the history,
+     * if the run keeps one, remembers their records, and makes them survive
+     * a crash.
+     * @param evaluated The population.
+     * @param generation The generation it was evaluated in.
+     * @param parentIds The history records of the parents of every chromosome, two per chromosome.
+     */
+    private void recordHistory(Population evaluated, int generation, long[] parentIds){
+        if(history == null){
+            return;
+        }
+        for (int i=0;i<evaluated.size();i++){
+            evaluated.setId(i, appendHistory(evaluated, i, generation, parentIds));
+        }
+        flushHistory();
+    }
+
+    private long appendHistory(Population evaluated, int chromosome, int generation, long[] parentIds){
+        try{
+            return history.append(evaluated, chromosome, generation, parentIds[chromosome * 2], parentIds[chromosome * 2 + 1]);
+        }catch(IOException e){
+            throw new IllegalStateException("Can't write history file " + historyPath, e);
+        }
+    }
+
+    private void flushHistory(){
+        try{
+            history.flush();
+        }catch(IOException e){
+            throw new IllegalStateException("Can't write history file " + historyPath, e);
+        }
+    }
+
+    /**
+     * Saves the population and everything needed to carry on from it, if
+     * the run has a checkpoint file.
+     * @param evaluator The evaluator, whose rounds and cache are saved too.
+     * @param progress The number of generations, or steady-state children, evaluated.
+     * @throws IllegalStateException If the checkpoint can't be written.
+     */
+    private void writeCheckpoint(ParallelEvaluator evaluator, long progress){
+        if(checkpoint.isEmpty()){
+            return;
+        }
+        try{
+            new Checkpoint(seed, steadyState, progress, evaluator.getRounds(), rand, population).write(checkpoint, cache);
+        }catch(IOException e){
+            throw new IllegalStateException("Can't write checkpoint " + checkpoint, e);
+        }
+        System.out.println("Checkpoint: " + checkpoint + " after " + progress + (steadyState ? " children" : " generations"));
+    }
+
+    /**
+     * Reads the checkpoint to resume from, filling the cache with the one
+     * saved there.
+     * @return The checkpoint.
+     * @throws IllegalArgumentException If it was saved by a run with a different mode or population size.
+     * @throws IllegalStateException If it can't be read.
+     */
+    private Checkpoint readCheckpoint(){
+        Checkpoint saved;
+        try{
+            saved = Checkpoint.read(checkpoint, cache);
+        }catch(IOException e){
+            throw new IllegalStateException("Can't read checkpoint " + checkpoint, e);
+        }
+        if(saved.isSteadyState() != steadyState || saved.getPopulation().size() != populationSize){
+            throw new IllegalArgumentException(checkpoint + " was saved by a run with a different steadyState or populationSize");
+        }
+        return saved;
+    }
+
+    /**
+     * Copies the {@code topChroms} parents of the next population to
+     * {@code bestChromies}, picked by {@code selection}. The fitness of the
+     * population is left as it is.
+     */
+    public void getBestChromosomes(){
+        selection.select(population, bestChromies, topChroms, rand);
+    }
+
+    private void crossOver(){
+        breed(population, cos, parents);
+    }
+
+    /**
+     * Breeds a child from two random chromosomes of {@code bestChromies}.
+     * @param target The population to write the child to.
+     * @param child The index to write the child to.
+     * @param parentIds The array to write the history records of the parents to, at {@code 2 * child}.
+     */
+    private void breed(Population target, int child, long[] parentIds){
+        int firstChromosome;
+        int secondChromosome;
+
+        firstChromosome=rand.nextInt(topChroms);
+        secondChromosome=rand.nextInt(topChroms);
+        parentIds[child * 2] = bestChromies.getId(firstChromosome);
+        parentIds[child * 2 + 1] = bestChromies.getId(secondChromosome);
+
+        for(int i=0;i<Population.GENE_COUNT;i++) {
             if(rand.nextInt()==0){
-               chromosome[cos][i]=firstChromosome[i];
+               target.setGene(child, i, bestChromies.getGene(firstChromosome, i));
 
             }else{
-                chromosome[cos][i]=secondChromosome[i];
+                target.setGene(child, i, bestChromies.getGene(secondChromosome, i));
             }
         }
 
         // MUTACJA
 
-        for(int i=0;i<5;i++) {
+        for(int i=0;i<Population.GENE_COUNT;i++) {
             if (rand.nextInt(100)+1<=mutationRate){
-                chromosome[cos][i]=chromosome[cos][i] = geneMin + (geneMax - geneMin) * rand.nextDouble();
+                target.setGene(child, i, geneMin + (geneMax - geneMin) * rand.nextDouble());
                 mutations++;
             }
         }
-        chromosome[cos][5]=0;
-
+        target.clearEvaluation(child);
     }
 
-    public static void getNewPopulation(){
+    public void getNewPopulation(){
         getBestChromosomes();
           for (int i=0;i<populationSize;i++){
               cos=i;
               crossOver();
           }
-            System.out.println("MUTATIONS: "+mutations);
-            mutations=0;
-        for(int i=0; i<topChroms;i++){
-                System.out.println(" Chromosome Number: "+i);
-
-                for(int j=0; j<6;j++){
-                    System.out.print(" "+ bestChromies[i][j]);
-                }
-                System.out.println();
-            }
-        System.out.println();
-        System.out.println("============== Nowa populacja stworzona ==============");
-        System.out.println("============== Nowa populacja stworzona ==============");
         currentGeneration++;
-        System.out.println("GENERATION NR: " + currentGeneration);
+        if(metrics == null){
+            System.out.println("MUTATIONS: "+mutations);
+            printBestChromosomes();
+            System.out.println();
+            System.out.println("============== Nowa populacja stworzona ==============");
+            System.out.println("============== Nowa populacja stworzona ==============");
+            System.out.println("GENERATION NR: " + currentGeneration);
+        }
+        mutations=0;
 
         /*
         for (int i=0; i<populationSize; i++) {
             System.out.print("chromosom nr: " + i );
-            for (int j = 0; j < 6; j++) {
-                System.out.print(" ; " + chromosome[i][j] );
+            for (int j = 0; j < Population.GENE_COUNT; j++) {
+                System.out.print(" ; " + population.getGene(i, j) );
                 System.out.print(" ");
             }
             System.out.println();
@@ -119,27 +799,158 @@ public class geneticOperations {
          */
     }
 
+    private void printBestChromosomes(){
+        for(int i=0; i<topChroms;i++){
+            System.out.println(" Chromosome Number: "+i);
+
+            for(int j=0; j<Population.GENE_COUNT;j++){
+                System.out.print(" "+ bestChromies.getGene(i, j));
+            }
+            System.out.print(" "+ bestChromies.getFitness(i));
+            System.out.println();
+        }
+    }
+
 
-    public static void generateFirstPopulation(){
+    public void generateFirstPopulation(){
         int maxWeight= geneMax;
         int minWieght= geneMin;
 
-        for (int i=0; i<populationSize; i++) {
-            for (int j = 0; j < 6; j++) {
-                Random rand = new Random();
-                chromosome[i][j] = minWieght + (maxWeight - minWieght) * rand.nextDouble();
-                if(j==5){chromosome[i][j]=0;}
+        if(!warmStart.isEmpty()){
+            seedFromElites();
+        }else{
+            for (int i=0; i<populationSize; i++) {
+                for (int j = 0; j < Population.GENE_COUNT; j++) {
+                    population.setGene(i, j, minWieght + (maxWeight - minWieght) * rand.nextDouble());
+                }
+                // celowo odrzucane losowanie: dawne miejsce na wynik w chromosomie - bez niego
+                // to samo ziarno nie dawaloby juz tych samych populacji co przed zmianami
+                rand.nextDouble();
+                population.clearEvaluation(i);
             }
         }
 
-        for (int i=0; i<populationSize; i++) {
+        for (int i=0; metrics==null && i<populationSize; i++) {
             System.out.print("chromosom nr: " + i );
-            for (int j = 0; j < 6; j++) {
-                System.out.print(" ; " + chromosome[i][j] );
+            for (int j = 0; j < Population.GENE_COUNT; j++) {
+                System.out.print(" ; " + population.getGene(i, j) );
                 System.out.print(" ");
             }
+            System.out.print(" ; " + population.getFitness(i) );
+            System.out.print(" ");
         System.out.println();
 
         }
     }
+
+    /**
+     * Starts the first population from the best distinct chromosomes of the
+     * {@code warmStart} sources, and fills the rest with {@code seeding}.
+     * The elites are evaluated again, since this run may play by other rules.
+     * @throws IllegalArgumentException If the sources have no chromosomes.
+     */
+    private void seedFromElites(){
+        List<Population> sources = new ArrayList<Population>();
+        int total = 0;
+        for (String source : warmStart.split(",")){
+            Population loaded = loadElites(source.trim());
+            sources.add(loaded);
+            total += loaded.size();
+        }
+        Population candidates = new Population(total);
+        int next = 0;
+        for (Population loaded : sources){
+            for (int i=0;i<loaded.size();i++){
+                loaded.copyTo(i, candidates, next++);
+            }
+        }
+
+        // najlepsze rozne chromosomy - kopie elit z kolejnych pokolen liczymy raz (licza sie tylko wagi)
+        Population elites = new Population(Math.min(warmStartElites, populationSize));
+        Set<FitnessCache.Key> seen = new HashSet<FitnessCache.Key>();
+        int count = 0;
+        for (int i : Selection.getTop(candidates, total)){
+            if (count == elites.size()){
+                break;
+            }
+            if (seen.add(new FitnessCache.Key(candidates, i, 0))){
+                candidates.copyTo(i, elites, count++);
+            }
+        }
+        if (count == 0){
+            throw new IllegalArgumentException("warmStart " + warmStart + " has no chromosomes");
+        }
+
+        for (int i=0;i<count;i++){
+            elites.copyTo(i, population, i);
+            population.clearEvaluation(i);
+        }
+        seeding.fill(population, count, elites, count, geneMin, geneMax, warmStartSigma, rand);
+        System.out.println("Warm start: " + count + " elites from " + warmStart + ", the rest " + seeding);
+    }
+
+    /**
+     * Loads the chromosomes of a warm start source: the population of a
+     * checkpoint, the last generation of a history file, or with
+     * {@code manual} the {@code manualChromosome}, which always ranks first.
+     * Files are only read, never changed.
+     * @param source The source.
+     * @return Its chromosomes, with the fitness they had.
+     * @throws IllegalArgumentException If the source is none of these, or
+     * {@code manualChromosome} doesn't have a weight for every gene.
+     * @throws IllegalStateException If the file can't be read.
+     */
+    private Population loadElites(String source){
+        if (source.equals("manual")){
+            Population manual = new Population(1);
+            double[] weights = config.getDoubles("manualChromosome");
+            if (weights.length != Population.GENE_COUNT){
+                throw new IllegalArgumentException("manualChromosome needs " + Population.GENE_COUNT + " weights but has " + weights.length);
+            }
+            for (int j=0;j<Population.GENE_COUNT;j++){
+                manual.setGene(0, j, weights[j]);
+            }
+            manual.setEvaluation(0, Double.POSITIVE_INFINITY, 0, 0);
+            return manual;
+        }
+        try{
+            DataInputStream in = new DataInputStream(new FileInputStream(source));
+            int magic;
+            try{
+                magic = in.readInt();
+            }finally{
+                in.close();
+            }
+            if (magic == Checkpoint.MAGIC){
+                return Checkpoint.read(source, null).getPopulation();
+            }
+            if (magic == HistoryStore.MAGIC){
+                HistoryStore archive = new HistoryStore(source, true);
+                try{
+                    int last = archive.getLastGeneration();
+                    Population loaded = new Population((int)archive.getCount(last));
+                    for (int i=0;i<loaded.size();i++){
+                        archive.copyTo(archive.getFirst(last) + i, loaded, i);
+                    }
+                    return loaded;
+                }finally{
+                    archive.close();
+                }
+            }
+        }catch(IOException e){
+            throw new IllegalStateException("Can't read warm start " + source, e);
+        }
+        throw new IllegalArgumentException(source + " is neither a checkpoint nor a history file");
+    }
+
+    /**
+     * Runs the genetic algorithm with settings from a properties file and
+     * command line flags, for example
+     * {@code --config=sweep.properties --populationSize=1000 --seed=42}.
+     * @param args The flags, see {@link Config}.
+     * @throws IOException If the properties file can't be read.
+     */
+    public static void main(String[] args) throws IOException {
+        new geneticOperations(Config.parse(args)).run();
+    }
 }